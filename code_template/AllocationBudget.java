@@ -0,0 +1,215 @@
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+
+/**
+    Allocation regression check for the hot paths. Every operation is warmed up so that it is compiled,
+    then run many times while the bytes allocated by this thread are counted. The average per operation is
+    compared with the budget declared next to it. Paths with a budget of 0 must stay allocation-free.
+
+    Prints one line per operation and exits with status 1 if any operation is over its budget.
+    Run with the default JIT (no -Xint), since the budgets assume escape analysis.
+
+    Usage: java AllocationBudget
+*/
+public class AllocationBudget
+{
+    /**
+     * Measures allocation on this thread.
+     */
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * The number of warm-up runs of every operation.
+     */
+    private static final int WARMUP = 200_000;
+
+    /**
+     * The number of measured runs of every operation.
+     */
+    private static final int RUNS = 100_000;
+
+    /**
+     * Bytes a measurement may allocate beyond its budget, for bookkeeping outside the operation such as compilation.
+     */
+    private static final long NOISE_BYTES = 16 * 1024;
+
+    /**
+     * The number of transactions in the block the Merkle operations work on.
+     */
+    private static final int BLOCK_SIZE = 1024;
+
+    /**
+     * Keeps results alive so that the measured work cannot be optimized away.
+     */
+    private static volatile Object sink;
+
+    /**
+     * The report, printed in one go.
+     */
+    private final StringBuilder report = new StringBuilder(1024);
+
+    /**
+     * The number of operations over budget.
+     */
+    private int violations;
+
+    public static void main(String[] args)
+    {
+        AllocationBudget check = new AllocationBudget();
+        check.run();
+        System.out.print(check.report);
+        if (check.violations > 0)
+        {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Measures every operation against its budget.
+     */
+    private void run()
+    {
+        report.append(String.format("%-48s %12s %12s%n", "operation", "bytes/op", "budget"));
+
+        Block block = new Block();
+        for (int i = 0; i < BLOCK_SIZE; i++)
+        {
+            block.addTransaction(new Transaction("sender" + i, "receiver" + i, i, i % 100));
+        }
+        MerkleTree tree = new MerkleTree(block);
+        String root = MerkleTree.rootHashOf(block);
+        Transaction leaf = block.iterator().next();
+        ByteBuffer proof = ByteBuffer.allocate(CompactProof.encodedLength(tree.height()));
+        tree.extractProof(leaf, proof);
+        proof.flip();
+        ByteBuffer proofOut = ByteBuffer.allocate(proof.capacity());
+        SinglyLinkedList<String> proofList = tree.extractProof(leaf);
+
+        String left = Utilities.cryptographicHashFunction("left");
+        String right = Utilities.cryptographicHashFunction("right");
+        byte[] leftDigest = Utilities.digest("left");
+        byte[] rightDigest = Utilities.digest("right");
+        byte[] combined = new byte[32];
+
+        PriorityLine<Transaction> line = new FeeBucketLine();
+        PriorityLine<Transaction> sortedLine = new PriorityLine<>();
+        for (Transaction t : block)
+        {
+            line.enqueue(t);
+            sortedLine.enqueue(t);
+        }
+
+        // The String API builds MessageDigests, byte arrays and hex Strings on every call (1320 and 1448 bytes)
+        check("cryptographicHashFunction(String)", 1536, 1,
+                i -> sink = Utilities.cryptographicHashFunction(left));
+        check("cryptographicHashFunction(String, String)", 1664, 1,
+                i -> sink = Utilities.cryptographicHashFunction(left, right));
+        check("combineDigests", 0, 1,
+                i -> Utilities.combineDigests(leftDigest, rightDigest, combined));
+        // Two 32-byte scratch digests per proof
+        check("verifyTransaction(ByteBuffer)", 128, 1,
+                i -> sink = Utilities.verifyTransaction(leaf, proof, root));
+        // One cryptographicHashFunction(String, String) per level of the proof
+        check("verifyTransaction(SinglyLinkedList), per level", 1664, tree.height(),
+                i -> sink = Utilities.verifyTransaction(leaf, proofList, root));
+        // Siblings are decoded from the nodes straight into the buffer
+        check("MerkleTree.extractProof(ByteBuffer)", 0, 1,
+                i -> {
+                    proofOut.clear();
+                    sink = tree.extractProof(leaf, proofOut);
+                });
+        // One chain node per queued transaction
+        check("FeeBucketLine enqueue + dequeue", 32, 1,
+                i -> line.enqueue(line.dequeue()));
+        // The backing array only grows, so a queue of steady size allocates nothing
+        check("PriorityLine enqueue + dequeue", 0, 1,
+                i -> sortedLine.enqueue(sortedLine.dequeue()));
+        // Leaf hashing plus leaf and inner nodes with their hex hash codes, amortized over the transactions
+        // of the block. Transactions memoize their leaf hash, so every run builds a fresh block outside the measurement
+        check("MerkleTree build, per transaction", 2944, BLOCK_SIZE,
+                i -> {
+                    Block fresh = new Block();
+                    for (int t = 0; t < BLOCK_SIZE; t++)
+                    {
+                        fresh.addTransaction(new Transaction("sender" + t, "receiver" + t, t, t % 100));
+                    }
+                    return fresh;
+                },
+                fresh -> sink = new MerkleTree(fresh));
+    }
+
+    /**
+     * Runs an operation and records whether it stayed within its allocation budget.
+     *
+     * @param name is the name of the operation.
+     * @param budget is the maximum average number of bytes allocated per operation, not counting NOISE_BYTES.
+     * @param opsPerRun is the number of operations performed by one run, e.g. the transactions of a block.
+     * @param operation is one run of the operation; it gets the run number.
+     */
+    private void check(String name, long budget, int opsPerRun, IntConsumer operation)
+    {
+        int runs = Math.max(1, RUNS / opsPerRun);
+        for (int i = 0; i < Math.max(1, WARMUP / opsPerRun); i++)
+        {
+            operation.accept(i);
+        }
+
+        long before = THREADS.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < runs; i++)
+        {
+            operation.accept(i);
+        }
+        long allocated = THREADS.getCurrentThreadAllocatedBytes() - before;
+        record(name, budget, (long) runs * opsPerRun, allocated);
+    }
+
+    /**
+     * Runs an operation on fresh input and records whether it stayed within its allocation budget.
+     * Only the operation is measured, not the preparation of its input.
+     *
+     * @param name is the name of the operation.
+     * @param budget is the maximum average number of bytes allocated per operation, not counting NOISE_BYTES.
+     * @param opsPerRun is the number of operations performed by one run, e.g. the transactions of a block.
+     * @param setup prepares the input of one run; it gets the run number.
+     * @param operation is one run of the operation on that input.
+     */
+    private <T> void check(String name, long budget, int opsPerRun, IntFunction<T> setup, Consumer<T> operation)
+    {
+        int runs = Math.max(1, RUNS / opsPerRun);
+        for (int i = 0; i < Math.max(1, WARMUP / opsPerRun); i++)
+        {
+            operation.accept(setup.apply(i));
+        }
+
+        long allocated = 0;
+        for (int i = 0; i < runs; i++)
+        {
+            T input = setup.apply(i);
+            long before = THREADS.getCurrentThreadAllocatedBytes();
+            operation.accept(input);
+            allocated += THREADS.getCurrentThreadAllocatedBytes() - before;
+        }
+        record(name, budget, (long) runs * opsPerRun, allocated);
+    }
+
+    /**
+     * Adds the result of a measurement to the report.
+     *
+     * @param name is the name of the operation.
+     * @param budget is the maximum average number of bytes allocated per operation, not counting NOISE_BYTES.
+     * @param ops is the number of operations measured.
+     * @param allocated is the number of bytes they allocated.
+     */
+    private void record(String name, long budget, long ops, long allocated)
+    {
+        double perOp = (double) allocated / ops;
+        boolean over = allocated > budget * ops + NOISE_BYTES;
+        if (over) violations++;
+
+        report.append(String.format("%-48s %12.1f %12d%s%n", name, perOp, budget, over ? "  OVER BUDGET" : ""));
+    }
+}
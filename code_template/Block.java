@@ -1,4 +1,6 @@
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.stream.Stream;
 
 /**
     - Represents a single block in the blockchain
@@ -20,6 +22,16 @@ public class Block implements Comparable<Block>, Iterable<Transaction>
      */
     private String rootHash;
 
+    /**
+     * The header hash of the preceding block in the chain, or Blockchain.GENESIS_HASH for the first block.
+     */
+    private String previousHash;
+
+    /**
+     * The position of this block in its chain, or -1 if it has not been added to a chain.
+     */
+    private int index;
+
     /**
      * Constructs an empty block with no transactions and an empty root hash.
      */
@@ -27,6 +39,8 @@ public class Block implements Comparable<Block>, Iterable<Transaction>
     {
         blockList = new SinglyLinkedList<>();
         rootHash = "";
+        previousHash = "";
+        index = -1;
     }
 
     /**
@@ -65,11 +79,91 @@ public class Block implements Comparable<Block>, Iterable<Transaction>
         this.rootHash = hashCode;
     }
 
+    /**
+     * Gets the header hash of the preceding block, which this block's header commits to.
+     * @return The previous header hash.
+     */
+    public String getPreviousHash()
+    {
+        return previousHash;
+    }
+
+    /**
+     * Links this block to its predecessor.
+     * @param previousHash The header hash of the preceding block.
+     */
+    public void setPreviousHash(String previousHash)
+    {
+        this.previousHash = previousHash;
+    }
+
+    /**
+     * Gets the position of this block in its chain.
+     * @return The index of the block, or -1 if it has not been added to a chain.
+     */
+    public int getIndex()
+    {
+        return index;
+    }
+
+    /**
+     * Records the position of this block in its chain.
+     * @param index The index of the block.
+     */
+    public void setIndex(int index)
+    {
+        this.index = index;
+    }
+
+    /**
+     * Computes the hash of this block's header, which commits to the previous header hash and to the root hash.
+     * Changing any transaction of any earlier block therefore changes this hash.
+     * @return The header hash.
+     */
+    public String getHeaderHash()
+    {
+        return headerHash(previousHash, rootHash);
+    }
+
+    /**
+     * Computes a header hash from its two fields.
+     * @param previousHash The header hash of the preceding block.
+     * @param rootHash The Merkle root hash of the block.
+     * @return The header hash.
+     */
+    public static String headerHash(String previousHash, String rootHash)
+    {
+        return Utilities.cryptographicHashFunction(previousHash + rootHash);
+    }
+
     @Override
     public Iterator<Transaction> iterator() {
         return blockList.iterator();
     }
 
+    @Override
+    public Spliterator<Transaction> spliterator() {
+        return blockList.spliterator();
+    }
+
+    /**
+     * Returns a sequential stream over the transactions in this block.
+     * @return A sequential Stream of transactions.
+     */
+    public Stream<Transaction> stream()
+    {
+        return blockList.stream();
+    }
+
+    /**
+     * Returns a parallel stream over the transactions in this block.
+     * @return A parallel Stream of transactions.
+     */
+    public Stream<Transaction> parallelStream()
+    {
+        return blockList.parallelStream();
+    }
+
     @Override
     public int compareTo(Block o) {
         return Integer.compare(this.numOfTransactions(), o.numOfTransactions());
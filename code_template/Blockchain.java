@@ -1,4 +1,6 @@
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.stream.Stream;
 
 /**
     - The class represents the entire blockchain.
@@ -15,40 +17,222 @@ public class Blockchain implements Iterable<Block>
      */
     private SinglyLinkedList<Block> blockchainList;
 
+    /**
+     * The previous hash of the first block of every chain.
+     */
+    public static final String GENESIS_HASH = "0000000000000000000000000000000000000000000000000000000000000000";
+
+    /**
+     * The header hash of the last block, or GENESIS_HASH if the chain is empty.
+     */
+    private String tipHash;
+
+    /**
+     * Merkle Mountain Range over the root hashes of the blocks, in chain order.
+     */
+    private MountainRange mountainRange;
+
+    /**
+     * The minimum cumulative fees of a block.
+     */
+    private final int threshold;
+
+    /**
+     * The cumulative fees of the block under construction.
+     */
+    private int cumulativeFees;
+
+    /**
+     * The block under construction, not yet part of the chain.
+     */
+    private Block currentBlockTransactions;
+
     /**
         The concstructor takes a priority queue and creates the linked list of blocks.
 
         @param threshold is the minimum amount of cumulative fees that is required to create a new block.
         The block must contain the minimum number of transactions that satisfy the threshold criterion
 
+        Each block is sealed as it is added: its Merkle root hash is computed, its header is linked to the previous block's header,
+        and its root hash is appended to the chain's Merkle Mountain Range.
+
         @param queue The list of transactions that make up each block that will be added into the block chain.
         
         TIME COMPLEXITY REQUIREMENT: O(N)
     */
     public Blockchain(PriorityLine<Transaction> queue, int threshold)
     {
-        blockchainList = new SinglyLinkedList<>();
-        int cumulativeFees = 0;
-        Block currentBlockTransactions = new Block();
+        this(threshold);
 
         while (!queue.isEmpty()) {
-            Transaction currentTransaction = queue.dequeue();
-            cumulativeFees += currentTransaction.getFee();
-            currentBlockTransactions.addTransaction(currentTransaction);
-    
-            if (cumulativeFees >= threshold || queue.peek() == null) {
-                blockchainList.add(currentBlockTransactions);
-    
-                // Reset for next block
-                cumulativeFees = 0;
-                currentBlockTransactions = new Block();
+            append(queue.dequeue());
+
+            if (queue.peek() == null) {
+                sealCurrentBlock();
             }
         }
     }
 
+    /**
+        Creates an empty chain that is built incrementally with add and flush, e.g. while draining a live mempool.
+
+        @param threshold is the minimum amount of cumulative fees that is required to create a new block.
+    */
+    public Blockchain(int threshold)
+    {
+        blockchainList = new SinglyLinkedList<>();
+        tipHash = GENESIS_HASH;
+        mountainRange = new MountainRange();
+        this.threshold = threshold;
+        this.cumulativeFees = 0;
+        this.currentBlockTransactions = new Block();
+    }
+
+    /**
+        Adds a transaction to the block under construction, and seals and appends that block
+        once its cumulative fees reach the threshold.
+
+        @param t The next transaction, normally the highest-fee one available.
+        @return the block that was sealed by this transaction, or null if the block is still open.
+
+        TIME COMPLEXITY REQUIREMENT: O(1) amortized, plus O(M) for sealing a block of M transactions
+    */
+    public Block add(Transaction t)
+    {
+        return append(t);
+    }
+
+    /**
+        Seals and appends the block under construction even if it has not reached the threshold,
+        as the constructor does for the last transactions of the queue.
+
+        @return the sealed block, or null if the block under construction is empty.
+    */
+    public Block flush()
+    {
+        return sealCurrentBlock();
+    }
+
+    /**
+     * Implements add; the constructor calls it directly since add may be overridden.
+     * @param t The next transaction.
+     * @return the block that was sealed by this transaction, or null if the block is still open.
+     */
+    private Block append(Transaction t)
+    {
+        cumulativeFees += t.getFee();
+        currentBlockTransactions.addTransaction(t);
+
+        if (cumulativeFees >= threshold) {
+            return sealCurrentBlock();
+        }
+        return null;
+    }
+
+    /**
+     * Implements flush; the constructor calls it directly since flush may be overridden.
+     * @return the sealed block, or null if the block under construction is empty.
+     */
+    private Block sealCurrentBlock()
+    {
+        if (currentBlockTransactions.numOfTransactions() == 0) {
+            return null;
+        }
+
+        Block sealed = currentBlockTransactions;
+        seal(sealed);
+        blockchainList.add(sealed);
+
+        // Reset for next block
+        cumulativeFees = 0;
+        currentBlockTransactions = new Block();
+        return sealed;
+    }
+
+    /**
+     * Sets the root hash of a block, links its header to the current tip, which it then becomes,
+     * and appends its root hash to the mountain range.
+     * @param block The block to seal.
+     */
+    private void seal(Block block)
+    {
+        block.setRootHash(MerkleTree.rootHashOf(block));
+        block.setPreviousHash(tipHash);
+        block.setIndex(mountainRange.append(block.getRootHash()));
+        tipHash = block.getHeaderHash();
+    }
+
+    /**
+     * Gets the single hash that commits to the root hashes of all blocks, in order.
+     * @return The root of the chain's Merkle Mountain Range, or an empty string if the chain is empty.
+     * @implNote This operation has a time complexity of O(logB).
+     */
+    public String getChainCommitment()
+    {
+        return mountainRange.root();
+    }
+
+    /**
+     * Proves that a block belongs to this chain, to be checked with MountainRange.verify against getChainCommitment().
+     * @param block The block to prove.
+     * @return The inclusion proof of the block's root hash.
+     * @throws IllegalArgumentException if the block is not part of this chain.
+     * @implNote This operation has a time complexity of O(logB).
+     */
+    public MountainRange.Proof proveBlock(Block block)
+    {
+        int index = block.getIndex();
+        if (index < 0 || index >= blockchainList.size() || blockchainList.get(index) != block) {
+            throw new IllegalArgumentException("block is not part of this chain");
+        }
+        return mountainRange.prove(index);
+    }
+
+    /**
+     * Gets the header hash of the last block, which commits to every block of the chain.
+     * @return The tip header hash, or GENESIS_HASH if the chain is empty.
+     */
+    public String getTipHash()
+    {
+        return tipHash;
+    }
+
+    /**
+     * Returns the number of blocks in the chain.
+     * @return The number of blocks.
+     */
+    public int size()
+    {
+        return blockchainList.size();
+    }
+
     @Override
     public Iterator<Block> iterator() {
         return blockchainList.iterator();
     }
 
+    @Override
+    public Spliterator<Block> spliterator() {
+        return blockchainList.spliterator();
+    }
+
+    /**
+     * Returns a sequential stream over the blocks of the chain.
+     * @return A sequential Stream of blocks.
+     */
+    public Stream<Block> stream()
+    {
+        return blockchainList.stream();
+    }
+
+    /**
+     * Returns a parallel stream over the blocks of the chain.
+     * Chain-wide analytics split by block, e.g. {@code parallelStream().flatMap(Block::stream)}.
+     * @return A parallel Stream of blocks.
+     */
+    public Stream<Block> parallelStream()
+    {
+        return blockchainList.parallelStream();
+    }
+
 }
@@ -0,0 +1,439 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * A priority queue that never holds more than a fixed number of elements.
+ * Elements are kept in a min-max heap, so both the highest-priority element (to dequeue)
+ * and the lowest-priority element (to evict) are reachable in O(1) and removable in O(logN).
+ * When the queue is full, an incoming element either evicts the current lowest-priority element
+ * or, if it does not outrank it, is rejected.
+ *
+ * @param <T> The type of elements stored in the priority queue, must implement Comparable.
+ */
+public class BoundedPriorityLine<T extends Comparable<T>> extends PriorityLine<T>
+{
+    /**
+     * The min-max heap. Even levels (starting with the root) are min levels, odd levels are max levels.
+     */
+    private Entry<T>[] heap;
+
+    /**
+     * The number of elements in the heap.
+     */
+    private int size;
+
+    /**
+     * Arrival counter used to keep equal elements in FIFO order.
+     */
+    private long sequence;
+
+    /**
+     * Called with every element evicted to make room for a higher-priority one; may be null.
+     */
+    private final Consumer<? super T> evictionListener;
+
+    /**
+     * The number of elements evicted so far.
+     */
+    private long evictedCount;
+
+    /**
+     * The number of incoming elements rejected so far because the queue was full.
+     */
+    private long rejectedCount;
+
+    /**
+     * An element of the heap together with its arrival number.
+     *
+     * @param <T> The type of the stored element.
+     */
+    private static class Entry<T extends Comparable<T>> {
+        /**
+         * The stored element.
+         */
+        final T value;
+
+        /**
+         * The arrival number of the element.
+         */
+        final long sequence;
+
+        /**
+         * Creates an entry.
+         * @param value The element.
+         * @param sequence Its arrival number.
+         */
+        Entry(T value, long sequence) {
+            this.value = value;
+            this.sequence = sequence;
+        }
+
+        /**
+         * Orders entries by priority: a higher element ranks higher, and among equal elements
+         * the earlier arrival ranks higher.
+         *
+         * @param other The entry to compare to.
+         * @return A positive integer if this entry ranks higher, a negative integer if it ranks lower.
+         */
+        int rank(Entry<T> other) {
+            int cmp = value.compareTo(other.value);
+            if (cmp != 0) return cmp;
+            return Long.compare(other.sequence, sequence);
+        }
+    }
+
+    /**
+     * Initializes an empty bounded priority queue.
+     *
+     * @param capacity The maximum number of elements the queue holds.
+     * @throws IllegalArgumentException if capacity is not positive.
+     */
+    public BoundedPriorityLine(int capacity)
+    {
+        this(capacity, null);
+    }
+
+    /**
+     * Initializes an empty bounded priority queue that reports its evictions.
+     *
+     * @param capacity The maximum number of elements the queue holds.
+     * @param evictionListener Called with every evicted element; may be null.
+     * @throws IllegalArgumentException if capacity is not positive.
+     */
+    @SuppressWarnings("unchecked")
+    public BoundedPriorityLine(int capacity, Consumer<? super T> evictionListener)
+    {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.heap = (Entry<T>[]) new Entry<?>[capacity];
+        this.evictionListener = evictionListener;
+    }
+
+    /**
+     * Inserts an element into the priority queue, evicting or rejecting as described in {@link #offer}.
+     *
+     * @param element The element to be inserted.
+     * @implNote This operation has a time complexity of O(logN).
+     */
+    @Override
+    public void enqueue(T element)
+    {
+        offer(element);
+    }
+
+    /**
+     * Inserts an element into the priority queue.
+     * If the queue is full and the element outranks the lowest-priority element, that element is evicted.
+     * Otherwise a full queue rejects the incoming element.
+     *
+     * @param element The element to be inserted.
+     * @return True if the element was added, false if it was null or rejected.
+     * @implNote This operation has a time complexity of O(logN).
+     */
+    public boolean offer(T element)
+    {
+        if (element == null) return false;
+
+        if (size == heap.length) {
+            if (element.compareTo(heap[0].value) <= 0) {
+                rejectedCount++;
+                return false;
+            }
+
+            T evicted = removeAt(0).value;
+            evictedCount++;
+            if (evictionListener != null) evictionListener.accept(evicted);
+        }
+
+        int i = size++;
+        heap[i] = new Entry<>(element, sequence++);
+        bubbleUp(i);
+        return true;
+    }
+
+    /**
+     * Removes and returns the highest-priority element from the priority queue.
+     *
+     * @return The highest-priority element, or null if the priority queue is empty.
+     * @implNote This operation has a time complexity of O(logN).
+     */
+    @Override
+    public T dequeue()
+    {
+        if (size == 0) return null;
+
+        return removeAt(maxIndex()).value;
+    }
+
+    /**
+     * Returns the highest-priority element in the priority queue without removing it.
+     *
+     * @return The highest-priority element, or null if the priority queue is empty.
+     * @implNote This operation has a time complexity of O(1).
+     */
+    @Override
+    public T peek()
+    {
+        if (size == 0) return null;
+
+        return heap[maxIndex()].value;
+    }
+
+    /**
+     * Returns the lowest-priority element, the next one to be evicted, without removing it.
+     *
+     * @return The lowest-priority element, or null if the priority queue is empty.
+     * @implNote This operation has a time complexity of O(1).
+     */
+    public T peekLowest()
+    {
+        if (size == 0) return null;
+
+        return heap[0].value;
+    }
+
+    /**
+     * Returns the number of elements in the priority queue.
+     *
+     * @return The number of elements.
+     * @implNote This operation has a time complexity of O(1).
+     */
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Checks if the priority queue is empty.
+     *
+     * @return True if the priority queue is empty, false otherwise.
+     * @implNote This operation has a time complexity of O(1).
+     */
+    @Override
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Checks if the priority queue has reached its capacity.
+     *
+     * @return True if the next enqueue will evict or reject an element.
+     * @implNote This operation has a time complexity of O(1).
+     */
+    public boolean isFull()
+    {
+        return size == heap.length;
+    }
+
+    /**
+     * Returns the maximum number of elements the priority queue holds.
+     *
+     * @return The capacity.
+     */
+    public int capacity()
+    {
+        return heap.length;
+    }
+
+    /**
+     * Returns the number of elements evicted to make room for higher-priority ones.
+     *
+     * @return The eviction count.
+     */
+    public long evictedCount()
+    {
+        return evictedCount;
+    }
+
+    /**
+     * Returns the number of incoming elements rejected because the queue was full.
+     *
+     * @return The rejection count.
+     */
+    public long rejectedCount()
+    {
+        return rejectedCount;
+    }
+
+    /**
+     * Returns an iterator over the elements in the order they would be dequeued.
+     * The order is captured when the iterator is created.
+     *
+     * @return An iterator over the elements.
+     * @implNote This operation has a time complexity of O(NlogN).
+     */
+    @Override
+    public Iterator<T> iterator() {
+        Entry<T>[] snapshot = Arrays.copyOf(heap, size);
+        Arrays.sort(snapshot, (a, b) -> b.rank(a));
+
+        return new Iterator<T>() {
+            private int current = 0;
+
+            @Override
+            public boolean hasNext() {
+                return current < snapshot.length;
+            }
+
+            @Override
+            public T next() {
+                if (current >= snapshot.length) {
+                    throw new NoSuchElementException();
+                }
+                return snapshot[current++].value;
+            }
+        };
+    }
+
+    /**
+     * Finds the index of the highest-priority entry, which is the larger child of the root.
+     *
+     * @return The index of the highest-priority entry.
+     */
+    private int maxIndex() {
+        if (size == 1) return 0;
+        if (size == 2) return 1;
+        return heap[1].rank(heap[2]) >= 0 ? 1 : 2;
+    }
+
+    /**
+     * Checks whether an index lies on a min level of the heap.
+     *
+     * @param i The index.
+     * @return True for min levels, false for max levels.
+     */
+    private static boolean onMinLevel(int i) {
+        return ((31 - Integer.numberOfLeadingZeros(i + 1)) & 1) == 0;
+    }
+
+    /**
+     * Removes the entry at the given index, which must be the root or one of its children.
+     *
+     * @param i The index of the entry.
+     * @return The removed entry.
+     */
+    private Entry<T> removeAt(int i) {
+        Entry<T> removed = heap[i];
+        heap[i] = heap[--size];
+        heap[size] = null;
+        if (i < size) trickleDown(i);
+        return removed;
+    }
+
+    /**
+     * Restores the heap order after an entry was appended at the given index.
+     *
+     * @param i The index of the new entry.
+     */
+    private void bubbleUp(int i) {
+        if (i == 0) return;
+
+        int parent = (i - 1) >>> 1;
+        if (onMinLevel(i)) {
+            if (heap[i].rank(heap[parent]) > 0) {
+                swap(i, parent);
+                bubbleUpGrandparents(parent, false);
+            }
+            else {
+                bubbleUpGrandparents(i, true);
+            }
+        }
+        else {
+            if (heap[i].rank(heap[parent]) < 0) {
+                swap(i, parent);
+                bubbleUpGrandparents(parent, true);
+            }
+            else {
+                bubbleUpGrandparents(i, false);
+            }
+        }
+    }
+
+    /**
+     * Moves an entry up through the levels of its own kind.
+     *
+     * @param i The index of the entry.
+     * @param min True to move it up through min levels, false for max levels.
+     */
+    private void bubbleUpGrandparents(int i, boolean min) {
+        while (i > 2) {
+            int grandparent = (((i - 1) >>> 1) - 1) >>> 1;
+            int cmp = heap[i].rank(heap[grandparent]);
+            if (min ? cmp >= 0 : cmp <= 0) break;
+            swap(i, grandparent);
+            i = grandparent;
+        }
+    }
+
+    /**
+     * Restores the heap order after the entry at the given index was replaced.
+     *
+     * @param i The index of the replaced entry.
+     */
+    private void trickleDown(int i) {
+        boolean min = onMinLevel(i);
+
+        while (2 * i + 1 < size) {
+            int m = extremeDescendant(i, min);
+            boolean grandchild = m > 2 * i + 2;
+            int cmp = heap[m].rank(heap[i]);
+
+            if (min ? cmp >= 0 : cmp <= 0) return;
+            swap(m, i);
+            if (!grandchild) return;
+
+            int parent = (m - 1) >>> 1;
+            int toParent = heap[m].rank(heap[parent]);
+            if (min ? toParent > 0 : toParent < 0) swap(m, parent);
+            i = m;
+        }
+    }
+
+    /**
+     * Finds the lowest (or highest) ranked entry among the children and grandchildren of an index.
+     *
+     * @param i The index whose descendants are searched.
+     * @param min True to find the lowest ranked entry, false for the highest.
+     * @return The index of the extreme descendant.
+     */
+    private int extremeDescendant(int i, boolean min) {
+        int best = 2 * i + 1;
+        if (best + 1 < size && outranks(best + 1, best, min)) best++;
+
+        // Grandchildren occupy the four slots starting at 4i+3
+        for (int c = 4 * i + 3; c <= 4 * i + 6 && c < size; c++) {
+            if (outranks(c, best, min)) best = c;
+        }
+        return best;
+    }
+
+    /**
+     * Checks whether one entry is more extreme than another in the given direction.
+     *
+     * @param a The index of the first entry.
+     * @param b The index of the second entry.
+     * @param min True if lower ranks are more extreme, false if higher ranks are.
+     * @return True if the first entry is strictly more extreme.
+     */
+    private boolean outranks(int a, int b, boolean min) {
+        int cmp = heap[a].rank(heap[b]);
+        return min ? cmp < 0 : cmp > 0;
+    }
+
+    /**
+     * Swaps two entries of the heap.
+     *
+     * @param a The first index.
+     * @param b The second index.
+     */
+    private void swap(int a, int b) {
+        Entry<T> temp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = temp;
+    }
+}
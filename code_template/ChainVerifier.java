@@ -0,0 +1,169 @@
+import java.util.stream.IntStream;
+
+/**
+ * Audits a whole Blockchain. Every block's Merkle root is recomputed from its transactions in parallel,
+ * then the header links are checked in one sequential pass from the genesis hash to the tip.
+ */
+public final class ChainVerifier
+{
+    /**
+     * Not instantiable.
+     */
+    private ChainVerifier()
+    {
+    }
+
+    /**
+     * The outcome of a chain audit.
+     */
+    public static final class Report
+    {
+        /**
+         * The number of blocks audited.
+         */
+        private final int blocks;
+
+        /**
+         * The number of transactions audited.
+         */
+        private final long transactions;
+
+        /**
+         * The index of the first block whose root or link does not match, or -1 if the chain is valid.
+         */
+        private final int firstInvalidBlock;
+
+        /**
+         * Whether the recomputed tip matches the tip recorded by the chain.
+         */
+        private final boolean tipMatches;
+
+        /**
+         * The wall-clock duration of the audit in nanoseconds.
+         */
+        private final long elapsedNanos;
+
+        /**
+         * Creates a report.
+         *
+         * @param blocks The number of blocks audited.
+         * @param transactions The number of transactions audited.
+         * @param firstInvalidBlock The first invalid block index, or -1.
+         * @param tipMatches Whether the recomputed tip matches.
+         * @param elapsedNanos The duration of the audit.
+         */
+        private Report(int blocks, long transactions, int firstInvalidBlock, boolean tipMatches, long elapsedNanos)
+        {
+            this.blocks = blocks;
+            this.transactions = transactions;
+            this.firstInvalidBlock = firstInvalidBlock;
+            this.tipMatches = tipMatches;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return true if every root, every link and the tip match.
+         */
+        public boolean isValid()
+        {
+            return firstInvalidBlock < 0 && tipMatches;
+        }
+
+        /**
+         * @return the index of the first block whose root or link does not match, or -1 if there is none.
+         */
+        public int firstInvalidBlock()
+        {
+            return firstInvalidBlock;
+        }
+
+        /**
+         * @return the number of blocks audited.
+         */
+        public int blocks()
+        {
+            return blocks;
+        }
+
+        /**
+         * @return the number of transactions audited.
+         */
+        public long transactions()
+        {
+            return transactions;
+        }
+
+        /**
+         * @return the duration of the audit in nanoseconds.
+         */
+        public long elapsedNanos()
+        {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return the audit throughput in blocks per second.
+         */
+        public double blocksPerSecond()
+        {
+            return blocks * 1e9 / Math.max(1, elapsedNanos);
+        }
+
+        /**
+         * @return the audit throughput in transactions per second.
+         */
+        public double transactionsPerSecond()
+        {
+            return transactions * 1e9 / Math.max(1, elapsedNanos);
+        }
+
+        @Override
+        public String toString()
+        {
+            String verdict = isValid() ? "valid"
+                    : firstInvalidBlock >= 0 ? "INVALID at block " + firstInvalidBlock : "INVALID tip";
+            return String.format("%s: %d blocks, %d transactions in %.3f ms (%.0f blocks/s, %.0f tx/s)",
+                    verdict, blocks, transactions, elapsedNanos / 1e6, blocksPerSecond(), transactionsPerSecond());
+        }
+    }
+
+    /**
+     * Verifies that every block's stored root hash matches its transactions and that every header
+     * links to the header of the block before it, up to the chain's tip.
+     *
+     * @param chain is the chain to audit.
+     * @return a report with the verdict and the throughput of the audit.
+     */
+    public static Report verify(Blockchain chain)
+    {
+        long start = System.nanoTime();
+
+        Block[] blocks = chain.stream().toArray(Block[]::new);
+        String[] roots = new String[blocks.length];
+
+        // Recomputing the roots dominates the cost and is independent per block
+        IntStream.range(0, blocks.length).parallel()
+                .forEach(i -> roots[i] = MerkleTree.rootHashOf(blocks[i]));
+
+        int firstInvalidBlock = -1;
+        long transactions = 0;
+        String expectedPrevious = Blockchain.GENESIS_HASH;
+
+        for (int i = 0; i < blocks.length; i++)
+        {
+            Block block = blocks[i];
+            transactions += block.numOfTransactions();
+
+            if (firstInvalidBlock < 0
+                    && (!roots[i].equals(block.getRootHash()) || !expectedPrevious.equals(block.getPreviousHash())))
+            {
+                firstInvalidBlock = i;
+            }
+            expectedPrevious = Block.headerHash(expectedPrevious, roots[i]);
+        }
+
+        boolean tipMatches = expectedPrevious.equals(chain.getTipHash());
+
+        return new Report(blocks.length, transactions, firstInvalidBlock, tipMatches, System.nanoTime() - start);
+    }
+}
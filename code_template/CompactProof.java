@@ -0,0 +1,176 @@
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Binary encoding of a Merkle proof, about four times smaller than a list of hexadecimal hash codes.
+ * Layout, starting at the buffer's position:
+ * <pre>
+ *   depth       1 byte            number of sibling hashes
+ *   directions  4 bytes           bit i is set when the i-th sibling is a left child
+ *   siblings    depth x 32 bytes  raw sibling digests, deepest first
+ * </pre>
+ * The siblings are in the same order as the list returned by MerkleTree.extractProof.
+ * Readers use absolute offsets from the buffer's position and never move it, so a proof can be
+ * inspected and verified in place without copying.
+ */
+public final class CompactProof
+{
+    /**
+     * The length in bytes of the depth and directions header.
+     */
+    public static final int HEADER_LENGTH = 5;
+
+    /**
+     * The length in bytes of one sibling digest.
+     */
+    public static final int SIBLING_LENGTH = 32;
+
+    /**
+     * The largest depth the directions bitmask can describe.
+     */
+    public static final int MAX_DEPTH = 31;
+
+    /**
+     * Not instantiable.
+     */
+    private CompactProof()
+    {
+    }
+
+    /**
+     * Computes the encoded length of a proof.
+     *
+     * @param depth is the number of sibling hashes.
+     * @return the number of bytes the proof occupies.
+     */
+    public static int encodedLength(int depth)
+    {
+        return HEADER_LENGTH + depth * SIBLING_LENGTH;
+    }
+
+    /**
+     * Encodes a list of hexadecimal sibling hash codes at the buffer's position and advances it.
+     *
+     * @param siblings is the proof as returned by MerkleTree.extractProof, deepest sibling first.
+     * @param directions has bit i set when the i-th sibling is a left child.
+     * @param out is the buffer to write to.
+     * @throws IllegalArgumentException if the proof is deeper than MAX_DEPTH.
+     * @throws BufferOverflowException if the buffer is too small.
+     */
+    public static void encode(SinglyLinkedList<String> siblings, int directions, ByteBuffer out)
+    {
+        int depth = siblings.size();
+        if (depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("proof deeper than " + MAX_DEPTH);
+        }
+
+        int start = out.position();
+        if (out.remaining() < encodedLength(depth)) {
+            throw new BufferOverflowException();
+        }
+
+        putHeader(depth, directions, out, start);
+        int index = start + HEADER_LENGTH;
+        for (String sibling : siblings) {
+            putHex(sibling, out, index);
+            index += SIBLING_LENGTH;
+        }
+        out.position(index);
+    }
+
+    /**
+     * Writes the header of a proof at an absolute index, without moving the buffer's position.
+     *
+     * @param depth is the number of siblings.
+     * @param directions has bit i set when the i-th sibling is a left child.
+     * @param out is the buffer to write to.
+     * @param index is the index of the first byte of the proof.
+     */
+    static void putHeader(int depth, int directions, ByteBuffer out, int index)
+    {
+        out.put(index, (byte) depth);
+        out.putInt(index + 1, directions);
+    }
+
+    /**
+     * Decodes a proof back into the list form accepted by Utilities.verifyTransaction.
+     *
+     * @param proof is the buffer holding the proof at its position.
+     * @return the hexadecimal sibling hash codes, deepest first.
+     */
+    public static SinglyLinkedList<String> decode(ByteBuffer proof)
+    {
+        SinglyLinkedList<String> siblings = new SinglyLinkedList<>();
+        byte[] digest = new byte[SIBLING_LENGTH];
+        int depth = depth(proof);
+        for (int level = 0; level < depth; level++) {
+            proof.get(siblingOffset(proof, level), digest);
+            siblings.add(Utilities.toHex(digest));
+        }
+        return siblings;
+    }
+
+    /**
+     * Reads the number of sibling hashes of a proof.
+     *
+     * @param proof is the buffer holding the proof at its position.
+     * @return the depth of the proof.
+     */
+    public static int depth(ByteBuffer proof)
+    {
+        return proof.get(proof.position()) & 0xff;
+    }
+
+    /**
+     * Reads the direction bitmask of a proof.
+     *
+     * @param proof is the buffer holding the proof at its position.
+     * @return the bitmask, with bit i set when the i-th sibling is a left child.
+     */
+    public static int directions(ByteBuffer proof)
+    {
+        return proof.getInt(proof.position() + 1);
+    }
+
+    /**
+     * Checks whether a sibling is the left child of its parent.
+     *
+     * @param proof is the buffer holding the proof at its position.
+     * @param level is the index of the sibling, 0 being the deepest.
+     * @return true if the sibling is a left child.
+     */
+    public static boolean isLeftSibling(ByteBuffer proof, int level)
+    {
+        return (directions(proof) >>> level & 1) != 0;
+    }
+
+    /**
+     * Computes the absolute buffer index of a sibling digest.
+     *
+     * @param proof is the buffer holding the proof at its position.
+     * @param level is the index of the sibling, 0 being the deepest.
+     * @return the index of the first byte of the sibling.
+     */
+    public static int siblingOffset(ByteBuffer proof, int level)
+    {
+        return proof.position() + HEADER_LENGTH + level * SIBLING_LENGTH;
+    }
+
+    /**
+     * Writes a 64-character hexadecimal hash code as 32 raw bytes at an absolute index,
+     * without moving the buffer's position.
+     *
+     * @param hex is the hash code.
+     * @param out is the buffer to write to.
+     * @param index is the index of the first byte.
+     */
+    static void putHex(String hex, ByteBuffer out, int index)
+    {
+        if (hex.length() != 2 * SIBLING_LENGTH) {
+            throw new IllegalArgumentException("not a SHA-256 hash code: " + hex);
+        }
+        for (int i = 0; i < hex.length(); i += 2) {
+            out.put(index++, (byte) (Character.digit(hex.charAt(i), 16) << 4 | Character.digit(hex.charAt(i + 1), 16)));
+        }
+    }
+}
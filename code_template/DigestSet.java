@@ -0,0 +1,328 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * A set of SHA-256 digests used to reject duplicate transactions at ingestion time.
+ * Digests are stored as four raw longs each in a single open-addressing table with linear probing,
+ * so membership checks never build Strings or per-entry objects. The table has at most MAX_SLOTS slots,
+ * of which at most half are used, so an unbounded set holds up to MAX_SLOTS / 2 digests.
+ * The set is either unbounded, or bounded to a sliding window of the most recent digests
+ * by count and optionally by age, in which case its memory stays fixed.
+ */
+public class DigestSet
+{
+    /**
+     * The length in bytes of a SHA-256 digest.
+     */
+    public static final int DIGEST_LENGTH = 32;
+
+    /**
+     * The maximum number of slots, so that the key array (four longs per slot) stays below the array size limit.
+     */
+    public static final int MAX_SLOTS = 1 << 28;
+
+    /**
+     * The number of longs a digest is stored as.
+     */
+    private static final int WORDS = DIGEST_LENGTH / Long.BYTES;
+
+    /**
+     * Reads the big-endian longs of a digest.
+     */
+    private static final VarHandle WORD = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    /**
+     * The initial number of slots of an unbounded set.
+     */
+    private static final int INITIAL_SLOTS = 64;
+
+    /**
+     * The stored digests, WORDS longs per slot.
+     */
+    private long[] keys;
+
+    /**
+     * The digest being added or looked up, as WORDS longs.
+     */
+    private final long[] probe = new long[WORDS];
+
+    /**
+     * Marks which slots hold a digest.
+     */
+    private boolean[] used;
+
+    /**
+     * The number of digests in the set.
+     */
+    private int size;
+
+    /**
+     * The maximum number of digests kept, or 0 if the set is unbounded.
+     */
+    private final int maxEntries;
+
+    /**
+     * The maximum age of a digest in nanoseconds, or 0 if digests never expire.
+     */
+    private final long maxAgeNanos;
+
+    /**
+     * The windowed digests in insertion order, WORDS longs per entry; null if unbounded.
+     */
+    private final long[] window;
+
+    /**
+     * The insertion time of each windowed digest; null if digests never expire.
+     */
+    private final long[] insertedAt;
+
+    /**
+     * The ring position of the oldest windowed digest.
+     */
+    private int windowHead;
+
+    /**
+     * Creates an unbounded set.
+     */
+    public DigestSet()
+    {
+        this.keys = new long[INITIAL_SLOTS * WORDS];
+        this.used = new boolean[INITIAL_SLOTS];
+        this.maxEntries = 0;
+        this.maxAgeNanos = 0;
+        this.window = null;
+        this.insertedAt = null;
+    }
+
+    /**
+     * Creates a set that only remembers the most recent digests.
+     *
+     * @param maxEntries The number of most recent digests to remember.
+     * @throws IllegalArgumentException if maxEntries is not positive or needs more than MAX_SLOTS slots.
+     */
+    public DigestSet(int maxEntries)
+    {
+        this(maxEntries, 0);
+    }
+
+    /**
+     * Creates a set that only remembers the most recent digests that are not older than a given age.
+     *
+     * @param maxEntries The number of most recent digests to remember.
+     * @param maxAgeMillis The age after which a digest is forgotten, or 0 to keep digests until they are pushed out.
+     * @throws IllegalArgumentException if maxEntries is not positive or needs more than MAX_SLOTS slots,
+     *         or if maxAgeMillis is negative.
+     */
+    public DigestSet(int maxEntries, long maxAgeMillis)
+    {
+        if (maxEntries <= 0 || maxAgeMillis < 0) {
+            throw new IllegalArgumentException("maxEntries must be positive and maxAgeMillis non-negative");
+        }
+
+        // At most half of the slots are ever used, which keeps probe sequences short
+        long slots = Long.highestOneBit(maxEntries) << 2;
+        if (slots > MAX_SLOTS) {
+            throw new IllegalArgumentException("maxEntries must be less than " + MAX_SLOTS / 2);
+        }
+        this.keys = new long[(int) slots * WORDS];
+        this.used = new boolean[(int) slots];
+        this.maxEntries = maxEntries;
+        this.maxAgeNanos = maxAgeMillis * 1_000_000L;
+        this.window = new long[maxEntries * WORDS];
+        this.insertedAt = maxAgeMillis > 0 ? new long[maxEntries] : null;
+    }
+
+    /**
+     * Adds a digest to the set.
+     * A bounded set forgets its expired digests, then its oldest one if the window is full.
+     *
+     * @param digest The SHA-256 digest to add.
+     * @return True if the digest was not in the set, false if it is a duplicate.
+     * @throws IllegalArgumentException if the digest is not DIGEST_LENGTH bytes long.
+     * @throws IllegalStateException if an unbounded set already holds MAX_SLOTS / 2 digests.
+     * @implNote This operation has an expected time complexity of O(1).
+     */
+    public boolean add(byte[] digest)
+    {
+        checkLength(digest);
+
+        long now = 0;
+        if (insertedAt != null) {
+            now = System.nanoTime();
+            expire(now);
+        }
+
+        loadProbe(digest);
+        if (find(probe, 0) >= 0) return false;
+
+        if (window != null) {
+            if (size == maxEntries) {
+                removeKey(window, windowHead * WORDS);
+                windowHead = (windowHead + 1) % maxEntries;
+            }
+            // size already dropped by one if the oldest digest was forgotten
+            int tail = (windowHead + size) % maxEntries;
+            System.arraycopy(probe, 0, window, tail * WORDS, WORDS);
+            if (insertedAt != null) insertedAt[tail] = now;
+        }
+        else if (2L * (size + 1) > used.length) {
+            if (used.length == MAX_SLOTS) {
+                throw new IllegalStateException("DigestSet cannot hold more than " + MAX_SLOTS / 2 + " digests");
+            }
+            resize(used.length * 2);
+        }
+
+        insertKey(probe, 0);
+        return true;
+    }
+
+    /**
+     * Checks whether a digest is in the set.
+     *
+     * @param digest The SHA-256 digest to look up.
+     * @return True if the digest is in the set.
+     * @throws IllegalArgumentException if the digest is not DIGEST_LENGTH bytes long.
+     * @implNote This operation has an expected time complexity of O(1).
+     */
+    public boolean contains(byte[] digest)
+    {
+        checkLength(digest);
+        if (insertedAt != null) expire(System.nanoTime());
+
+        loadProbe(digest);
+        return find(probe, 0) >= 0;
+    }
+
+    /**
+     * Returns the number of digests in the set.
+     *
+     * @return The number of digests.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Validates the length of a digest.
+     *
+     * @param digest The digest.
+     */
+    private static void checkLength(byte[] digest) {
+        if (digest.length != DIGEST_LENGTH) {
+            throw new IllegalArgumentException("digest must be " + DIGEST_LENGTH + " bytes long");
+        }
+    }
+
+    /**
+     * Splits a digest into the big-endian longs it is stored as, in probe.
+     *
+     * @param digest The digest.
+     */
+    private void loadProbe(byte[] digest) {
+        for (int w = 0; w < WORDS; w++) {
+            probe[w] = (long) WORD.get(digest, w * Long.BYTES);
+        }
+    }
+
+    /**
+     * Forgets the windowed digests that are older than the maximum age.
+     *
+     * @param now The current time in nanoseconds.
+     */
+    private void expire(long now) {
+        while (size > 0 && now - insertedAt[windowHead] > maxAgeNanos) {
+            removeKey(window, windowHead * WORDS);
+            windowHead = (windowHead + 1) % maxEntries;
+        }
+    }
+
+    /**
+     * Computes the home slot of a digest. SHA-256 output is uniform, so its first bytes are used directly.
+     *
+     * @param source The array holding the digest.
+     * @param offset The offset of the digest in the array.
+     * @return The home slot.
+     */
+    private int home(long[] source, int offset) {
+        return (int) (source[offset] >>> 32) & (used.length - 1);
+    }
+
+    /**
+     * Finds the slot holding a digest.
+     *
+     * @param source The array holding the digest.
+     * @param offset The offset of the digest in the array.
+     * @return The slot, or -1 if the digest is not in the set.
+     */
+    private int find(long[] source, int offset) {
+        int mask = used.length - 1;
+        for (int slot = home(source, offset); used[slot]; slot = (slot + 1) & mask) {
+            int start = slot * WORDS;
+            if (keys[start] == source[offset] && keys[start + 1] == source[offset + 1]
+                    && keys[start + 2] == source[offset + 2] && keys[start + 3] == source[offset + 3]) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Stores a digest that is known not to be in the set.
+     *
+     * @param source The array holding the digest.
+     * @param offset The offset of the digest in the array.
+     */
+    private void insertKey(long[] source, int offset) {
+        int mask = used.length - 1;
+        int slot = home(source, offset);
+        while (used[slot]) {
+            slot = (slot + 1) & mask;
+        }
+        System.arraycopy(source, offset, keys, slot * WORDS, WORDS);
+        used[slot] = true;
+        size++;
+    }
+
+    /**
+     * Removes a digest, shifting later entries of its probe sequence back so that no tombstones are needed.
+     *
+     * @param source The array holding the digest.
+     * @param offset The offset of the digest in the array.
+     */
+    private void removeKey(long[] source, int offset) {
+        int hole = find(source, offset);
+        if (hole < 0) return;
+
+        int mask = used.length - 1;
+        for (int slot = (hole + 1) & mask; used[slot]; slot = (slot + 1) & mask) {
+            int home = home(keys, slot * WORDS);
+            // The entry may fill the hole only if its home slot is not cyclically within (hole, slot]
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                System.arraycopy(keys, slot * WORDS, keys, hole * WORDS, WORDS);
+                hole = slot;
+            }
+        }
+        used[hole] = false;
+        size--;
+    }
+
+    /**
+     * Rehashes the digests of an unbounded set into a larger table.
+     *
+     * @param slots The new number of slots, at most MAX_SLOTS.
+     */
+    private void resize(int slots) {
+        long[] oldKeys = keys;
+        boolean[] oldUsed = used;
+
+        keys = new long[slots * WORDS];
+        used = new boolean[slots];
+        size = 0;
+
+        for (int slot = 0; slot < oldUsed.length; slot++) {
+            if (oldUsed[slot]) insertKey(oldKeys, slot * WORDS);
+        }
+    }
+}
@@ -0,0 +1,353 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A priority queue specialized for transactions, keyed directly by their integer fee.
+ * Fees in the range [0, bucketCount) are stored in buckets indexed by fee value, each bucket
+ * keeping its transactions in FIFO order. A bitmap of the non-empty buckets acts as the max-fee
+ * pointer, so finding the next highest fee is a word scan instead of a comparison chain.
+ * Fees outside the bucket range (negative or very large) overflow into a binary heap.
+ * Unlike PriorityLine, which dequeues equal fees in reverse insertion order, this queue dequeues them
+ * in insertion order, so it is opt-in wherever the resulting block contents must match PriorityLine's.
+ */
+public class FeeBucketLine extends PriorityLine<Transaction>
+{
+    /**
+     * The default number of fee buckets, covering fees 0 through 1023.
+     */
+    private static final int DEFAULT_BUCKET_COUNT = 1024;
+
+    /**
+     * The first transaction of each bucket, indexed by fee.
+     */
+    private Node[] heads;
+
+    /**
+     * The last transaction of each bucket, indexed by fee.
+     */
+    private Node[] tails;
+
+    /**
+     * One bit per bucket, set when the bucket holds at least one transaction.
+     */
+    private long[] occupied;
+
+    /**
+     * The highest fee whose bucket may be non-empty, or -1 if every bucket is empty.
+     */
+    private int maxFee;
+
+    /**
+     * The number of transactions stored in the buckets.
+     */
+    private int bucketSize;
+
+    /**
+     * Binary max-heap holding the transactions whose fee falls outside the bucket range.
+     */
+    private Node[] overflow;
+
+    /**
+     * The number of transactions stored in the overflow heap.
+     */
+    private int overflowSize;
+
+    /**
+     * Arrival counter used to keep equal fees in FIFO order inside the overflow heap.
+     */
+    private long sequence;
+
+    /**
+     * A queued transaction, chained to the next one of the same bucket.
+     */
+    private static class Node {
+        /**
+         * The queued transaction.
+         */
+        final Transaction value;
+
+        /**
+         * The arrival number of the transaction.
+         */
+        final long sequence;
+
+        /**
+         * The next transaction in the same bucket.
+         */
+        Node next;
+
+        /**
+         * Creates a node for the given transaction.
+         * @param value The transaction.
+         * @param sequence Its arrival number.
+         */
+        Node(Transaction value, long sequence) {
+            this.value = value;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Initializes an empty queue with the default bucket range.
+     */
+    public FeeBucketLine()
+    {
+        this(DEFAULT_BUCKET_COUNT);
+    }
+
+    /**
+     * Initializes an empty queue whose buckets cover fees 0 through bucketCount - 1.
+     *
+     * @param bucketCount The number of fee buckets.
+     * @throws IllegalArgumentException if bucketCount is not positive.
+     */
+    public FeeBucketLine(int bucketCount)
+    {
+        if (bucketCount <= 0) {
+            throw new IllegalArgumentException("bucketCount must be positive");
+        }
+        this.heads = new Node[bucketCount];
+        this.tails = new Node[bucketCount];
+        this.occupied = new long[(bucketCount + 63) >>> 6];
+        this.maxFee = -1;
+        this.overflow = new Node[16];
+    }
+
+    /**
+     * Inserts a transaction into the queue.
+     *
+     * @param element The transaction to be inserted.
+     * @implNote This operation has a time complexity of O(1), or O(logM) for the M overflowing fees.
+     */
+    @Override
+    public void enqueue(Transaction element)
+    {
+        if (element == null) return;
+
+        Node node = new Node(element, sequence++);
+        int fee = element.getFee();
+
+        if (fee < 0 || fee >= heads.length) {
+            pushOverflow(node);
+            return;
+        }
+
+        if (tails[fee] == null) {
+            heads[fee] = node;
+            occupied[fee >>> 6] |= 1L << fee;
+        }
+        else {
+            tails[fee].next = node;
+        }
+        tails[fee] = node;
+
+        if (fee > maxFee) maxFee = fee;
+        bucketSize++;
+    }
+
+    /**
+     * Removes and returns the transaction with the highest fee.
+     * Transactions with equal fees leave in the order they arrived.
+     *
+     * @return The highest-fee transaction, or null if the queue is empty.
+     * @implNote This operation has a time complexity of O(1) amortized.
+     */
+    @Override
+    public Transaction dequeue()
+    {
+        if (overflowFirst()) return popOverflow().value;
+        if (bucketSize == 0) return null;
+
+        int fee = maxFee;
+        Node node = heads[fee];
+        heads[fee] = node.next;
+
+        if (heads[fee] == null) {
+            tails[fee] = null;
+            occupied[fee >>> 6] &= ~(1L << fee);
+            maxFee = highestOccupied(fee);
+        }
+        bucketSize--;
+
+        return node.value;
+    }
+
+    /**
+     * Returns the transaction with the highest fee without removing it.
+     *
+     * @return The highest-fee transaction, or null if the queue is empty.
+     * @implNote This operation has a time complexity of O(1).
+     */
+    @Override
+    public Transaction peek()
+    {
+        if (overflowFirst()) return overflow[0].value;
+        if (bucketSize == 0) return null;
+
+        return heads[maxFee].value;
+    }
+
+    /**
+     * Returns the number of transactions in the queue.
+     *
+     * @return The number of transactions.
+     * @implNote This operation has a time complexity of O(1).
+     */
+    @Override
+    public int size()
+    {
+        return bucketSize + overflowSize;
+    }
+
+    /**
+     * Checks if the queue is empty.
+     *
+     * @return True if the queue is empty, false otherwise.
+     * @implNote This operation has a time complexity of O(1).
+     */
+    @Override
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    /**
+     * Returns an iterator over the transactions in the order they would be dequeued.
+     * The order is captured when the iterator is created.
+     *
+     * @return An iterator over the transactions.
+     * @implNote This operation has a time complexity of O(N + B) plus O(MlogM) for the overflowing fees.
+     */
+    @Override
+    public Iterator<Transaction> iterator() {
+        Node[] sortedOverflow = Arrays.copyOf(overflow, overflowSize);
+        Arrays.sort(sortedOverflow, (a, b) -> before(a, b) ? -1 : 1);
+
+        Transaction[] snapshot = new Transaction[size()];
+        int count = 0;
+        int next = 0;
+
+        // Overflowing fees above the bucket range come first
+        while (next < sortedOverflow.length && sortedOverflow[next].value.getFee() >= 0) {
+            snapshot[count++] = sortedOverflow[next++].value;
+        }
+
+        for (int fee = maxFee; fee >= 0; fee = highestOccupied(fee)) {
+            for (Node node = heads[fee]; node != null; node = node.next) {
+                snapshot[count++] = node.value;
+            }
+        }
+
+        // Negative fees come last
+        while (next < sortedOverflow.length) {
+            snapshot[count++] = sortedOverflow[next++].value;
+        }
+
+        return new Iterator<Transaction>() {
+            private int current = 0;
+
+            @Override
+            public boolean hasNext() {
+                return current < snapshot.length;
+            }
+
+            @Override
+            public Transaction next() {
+                if (current >= snapshot.length) {
+                    throw new NoSuchElementException();
+                }
+                return snapshot[current++];
+            }
+        };
+    }
+
+    /**
+     * Finds the highest occupied bucket strictly below the given fee.
+     *
+     * @param fee The fee to search below.
+     * @return The highest occupied fee below the given one, or -1 if there is none.
+     */
+    private int highestOccupied(int fee) {
+        int bit = fee - 1;
+        if (bit < 0) return -1;
+
+        int word = bit >>> 6;
+        long bits = occupied[word] & (-1L >>> (63 - (bit & 63)));
+
+        while (bits == 0) {
+            if (--word < 0) return -1;
+            bits = occupied[word];
+        }
+        return (word << 6) + 63 - Long.numberOfLeadingZeros(bits);
+    }
+
+    /**
+     * Decides whether the top of the overflow heap must leave before the highest bucket.
+     *
+     * @return True if the next transaction comes from the overflow heap.
+     */
+    private boolean overflowFirst() {
+        if (overflowSize == 0) return false;
+        return bucketSize == 0 || overflow[0].value.getFee() >= 0;
+    }
+
+    /**
+     * Orders two overflow nodes: higher fee first, earlier arrival first among equal fees.
+     *
+     * @param a The first node.
+     * @param b The second node.
+     * @return True if a must leave the queue before b.
+     */
+    private static boolean before(Node a, Node b) {
+        int cmp = a.value.compareTo(b.value);
+        return cmp > 0 || (cmp == 0 && a.sequence < b.sequence);
+    }
+
+    /**
+     * Adds a node to the overflow heap.
+     *
+     * @param node The node to add.
+     */
+    private void pushOverflow(Node node) {
+        if (overflowSize == overflow.length) {
+            overflow = Arrays.copyOf(overflow, overflowSize * 2);
+        }
+
+        int i = overflowSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(node, overflow[parent])) break;
+            overflow[i] = overflow[parent];
+            i = parent;
+        }
+        overflow[i] = node;
+    }
+
+    /**
+     * Removes the top node of the overflow heap.
+     *
+     * @return The removed node.
+     */
+    private Node popOverflow() {
+        Node top = overflow[0];
+        Node last = overflow[--overflowSize];
+        overflow[overflowSize] = null;
+
+        if (overflowSize > 0) {
+            int i = 0;
+            int half = overflowSize >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < overflowSize && before(overflow[child + 1], overflow[child])) {
+                    child++;
+                }
+                if (!before(overflow[child], last)) break;
+                overflow[i] = overflow[child];
+                i = child;
+            }
+            overflow[i] = last;
+        }
+        return top;
+    }
+}
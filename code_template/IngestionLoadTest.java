@@ -0,0 +1,119 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+    Loopback load test for IngestionServer.
+    Opens a number of connections, each on its own virtual thread, sends transactions one at a time and
+    times each one until it is acknowledged. Prints the throughput and the ingestion latency percentiles.
+
+    Usage: java IngestionLoadTest [port] [connections] [transactions]
+    With port 0 (the default) a server is started in-process and its chain summary is printed as well.
+*/
+public class IngestionLoadTest
+{
+    public static void main(String[] args) throws Exception
+    {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int transactions = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+
+        IngestionServer server = null;
+        if (port == 0) {
+            server = new IngestionServer(0, 10_000, 1_000);
+            port = server.port();
+        }
+
+        long[][] latencies = new long[connections][];
+        long start = System.nanoTime();
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<?>[] done = new Future<?>[connections];
+            for (int c = 0; c < connections; c++) {
+                int connection = c;
+                int share = transactions / connections + (c < transactions % connections ? 1 : 0);
+                int serverPort = port;
+                done[c] = clients.submit(() -> {
+                    latencies[connection] = send(serverPort, connection, share);
+                    return null;
+                });
+            }
+            for (Future<?> f : done) {
+                f.get();
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+
+        System.out.printf("%d transactions over %d connections in %.3f s: %.0f tx/s%n",
+                all.length, connections, elapsed / 1e9, all.length * 1e9 / elapsed);
+        System.out.printf("ingestion latency: p50 %.1f us, p99 %.1f us, max %.1f us%n",
+                percentile(all, 0.50) / 1e3, percentile(all, 0.99) / 1e3, percentile(all, 1.0) / 1e3);
+
+        if (server != null) {
+            server.close();
+            System.out.printf("server: %d accepted, %d duplicates, %d malformed, %d blocks, chain valid: %b%n",
+                    server.acceptedCount(), server.duplicateCount(), server.malformedCount(), server.blockCount(),
+                    ChainVerifier.verify(server.getBlockchain()).isValid());
+        }
+    }
+
+    /**
+     * Sends transactions over one connection, one at a time, timing each until it is acknowledged.
+     *
+     * @param port The server port.
+     * @param connection The connection number, used to make the transactions unique.
+     * @param count The number of transactions to send.
+     * @return The latency of each transaction in nanoseconds.
+     * @throws IOException if the connection fails.
+     */
+    private static long[] send(int port, int connection, int count) throws IOException
+    {
+        long[] latencies = new long[count];
+        SplittableRandom random = new SplittableRandom(connection);
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setTcpNoDelay(true);
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+
+            for (int i = 0; i < count; i++) {
+                byte[] line = String.format("load%d receiver%d %d %d%n",
+                        connection, i, random.nextInt(1_000_000), random.nextInt(100)).getBytes(StandardCharsets.UTF_8);
+
+                long sent = System.nanoTime();
+                out.write(line);
+                out.flush();
+                if (in.readLine() == null) {
+                    throw new IOException("connection closed by server");
+                }
+                latencies[i] = System.nanoTime() - sent;
+            }
+        }
+        return latencies;
+    }
+
+    /**
+     * Reads a percentile from sorted samples.
+     *
+     * @param sorted The samples in ascending order.
+     * @param fraction The percentile as a fraction, e.g. 0.99.
+     * @return The sample at that percentile, or 0 if there are none.
+     */
+    private static long percentile(long[] sorted, double fraction)
+    {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
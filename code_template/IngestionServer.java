@@ -0,0 +1,343 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accepts transactions over TCP on the loopback interface, in the "sender receiver amount fee" line format
+ * of the transaction files, and builds a Blockchain from them as they arrive.
+ * Every connection is served by its own virtual thread and feeds a shared Mempool. A single builder thread
+ * drains the mempool into the chain continuously, sealing a block whenever the fee threshold is reached or the
+ * mempool runs dry. When the mempool is full, connections stop reading until the builder catches up.
+ * Each line is answered with OK, DUP (already seen recently) or ERR (malformed).
+ */
+public class IngestionServer implements AutoCloseable
+{
+    /**
+     * The number of most recent transactions remembered to reject duplicates.
+     */
+    private static final int DEDUP_WINDOW = 1 << 16;
+
+    /**
+     * How long the builder waits for a transaction before sealing a partial block, in milliseconds.
+     */
+    private static final long LINGER_MILLIS = 50;
+
+    /**
+     * The listening socket.
+     */
+    private final ServerSocket serverSocket;
+
+    /**
+     * The pending transactions.
+     */
+    private final Mempool mempool;
+
+    /**
+     * The chain being built; only the builder thread touches it while the server runs.
+     */
+    private final Blockchain chain;
+
+    /**
+     * The recently seen leaf digests; guarded by itself.
+     */
+    private final DigestSet seen = new DigestSet(DEDUP_WINDOW);
+
+    /**
+     * Runs one virtual thread per connection.
+     */
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * The open client sockets, closed on shutdown.
+     */
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The thread accepting connections.
+     */
+    private final Thread acceptor;
+
+    /**
+     * The thread draining the mempool into the chain.
+     */
+    private final Thread builder;
+
+    /**
+     * Cleared by close() to stop accepting connections and reading lines.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Set by close() once every connection thread has finished; the builder then stops as soon as the mempool is empty.
+     */
+    private volatile boolean producersDone;
+
+    /**
+     * The number of transactions admitted to the mempool.
+     */
+    private final AtomicLong accepted = new AtomicLong();
+
+    /**
+     * The number of duplicate transactions rejected.
+     */
+    private final AtomicLong duplicates = new AtomicLong();
+
+    /**
+     * The number of malformed lines rejected.
+     */
+    private final AtomicLong malformed = new AtomicLong();
+
+    /**
+     * The number of blocks sealed.
+     */
+    private final AtomicLong blocks = new AtomicLong();
+
+    /**
+     * Binds the server to a loopback port and starts accepting connections and building blocks.
+     *
+     * @param port The TCP port, or 0 for any free port.
+     * @param mempoolCapacity The maximum number of pending transactions before senders are pushed back.
+     * @param threshold The minimum cumulative fees of a block.
+     * @throws IOException if the port cannot be bound.
+     */
+    public IngestionServer(int port, int mempoolCapacity, int threshold) throws IOException
+    {
+        this.serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        this.mempool = new Mempool(mempoolCapacity);
+        this.chain = new Blockchain(threshold);
+
+        this.acceptor = Thread.ofPlatform().name("ingestion-acceptor").daemon().start(this::acceptLoop);
+        this.builder = Thread.ofPlatform().name("block-builder").start(this::buildLoop);
+    }
+
+    /**
+     * @return the TCP port the server listens on.
+     */
+    public int port()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return the shared mempool.
+     */
+    public Mempool mempool()
+    {
+        return mempool;
+    }
+
+    /**
+     * Returns the chain built so far. It must only be read after close() has returned.
+     *
+     * @return the chain.
+     */
+    public Blockchain getBlockchain()
+    {
+        return chain;
+    }
+
+    /**
+     * @return the number of transactions admitted to the mempool.
+     */
+    public long acceptedCount()
+    {
+        return accepted.get();
+    }
+
+    /**
+     * @return the number of duplicate transactions rejected.
+     */
+    public long duplicateCount()
+    {
+        return duplicates.get();
+    }
+
+    /**
+     * @return the number of malformed lines rejected.
+     */
+    public long malformedCount()
+    {
+        return malformed.get();
+    }
+
+    /**
+     * @return the number of blocks sealed so far.
+     */
+    public long blockCount()
+    {
+        return blocks.get();
+    }
+
+    /**
+     * Stops accepting transactions, closes every connection, then waits until the builder has drained
+     * the mempool and sealed the last block. Connections waiting for mempool space are interrupted; their
+     * pending lines are neither answered nor counted. Every transaction answered with OK ends up in the chain.
+     * If interrupted while waiting, returns early with the interrupt status set.
+     */
+    @Override
+    public void close()
+    {
+        running = false;
+        try {
+            serverSocket.close();
+        }
+        catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+
+        try {
+            // No connection can be handed to the executor after this
+            acceptor.join();
+            for (Socket client : clients) {
+                closeQuietly(client);
+            }
+
+            connections.shutdownNow();
+            connections.awaitTermination(1, TimeUnit.MINUTES);
+
+            // Nothing is put into the mempool any more, so the builder's final drain is complete
+            producersDone = true;
+            builder.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Accepts connections until the server socket is closed.
+     */
+    private void acceptLoop()
+    {
+        while (running) {
+            try {
+                Socket client = serverSocket.accept();
+                clients.add(client);
+                connections.execute(() -> serve(client));
+            }
+            catch (IOException e) {
+                if (running) System.err.println(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reads the lines of one connection and answers each of them.
+     * Answers are flushed only when no further input is already buffered, so pipelined senders are served in batches.
+     *
+     * @param client The connection.
+     */
+    private void serve(Socket client)
+    {
+        try (client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while (running && (line = in.readLine()) != null) {
+                out.write(ingest(line));
+                if (!in.ready()) out.flush();
+            }
+        }
+        catch (IOException e) {
+            if (running) System.err.println(e.getMessage());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            clients.remove(client);
+        }
+    }
+
+    /**
+     * Parses, deduplicates and queues one transaction line, waiting while the mempool is full.
+     *
+     * @param line The transaction line.
+     * @return The answer line.
+     * @throws InterruptedException if interrupted while waiting for mempool space.
+     */
+    private String ingest(String line) throws InterruptedException
+    {
+        Transaction transaction;
+        try {
+            String[] transactionInfo = line.trim().split(" ");
+            if (transactionInfo.length != 4) {
+                malformed.incrementAndGet();
+                return "ERR\n";
+            }
+            transaction = new Transaction(transactionInfo[0], transactionInfo[1],
+                    Integer.parseInt(transactionInfo[2]), Integer.parseInt(transactionInfo[3]));
+        }
+        catch (NumberFormatException e) {
+            malformed.incrementAndGet();
+            return "ERR\n";
+        }
+
+        byte[] digest = transaction.leafDigest();
+        boolean fresh;
+        synchronized (seen) {
+            fresh = seen.add(digest);
+        }
+        if (!fresh) {
+            duplicates.incrementAndGet();
+            return "DUP\n";
+        }
+
+        mempool.put(transaction);
+        accepted.incrementAndGet();
+        return "OK\n";
+    }
+
+    /**
+     * Drains the mempool into the chain until every connection has finished and the mempool is empty.
+     */
+    private void buildLoop()
+    {
+        try {
+            while (true) {
+                // Read before polling: if no producer was left, an empty poll means the mempool stays empty
+                boolean done = producersDone;
+                Transaction transaction = mempool.poll(LINGER_MILLIS, TimeUnit.MILLISECONDS);
+                if (transaction != null) {
+                    if (chain.add(transaction) != null) blocks.incrementAndGet();
+                }
+                else {
+                    // The mempool ran dry, as at the end of the constructor's queue
+                    if (chain.flush() != null) blocks.incrementAndGet();
+                    if (done) return;
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Closes a socket, ignoring failures.
+     *
+     * @param socket The socket.
+     */
+    private static void closeQuietly(Socket socket)
+    {
+        try {
+            socket.close();
+        }
+        catch (IOException e) {
+            // already closed
+        }
+    }
+}
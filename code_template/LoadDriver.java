@@ -0,0 +1,178 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+    Headless end-to-end load test: load, Blockchain, MerkleTree, proof and verify, run once over a transaction file
+    (e.g. one written by WorkloadGenerator). Prints no hashes, only a table with, for every phase, its wall time,
+    throughput, allocation rate on the driving thread and peak heap. All output is collected and printed at the end.
+
+    Usage: java LoadDriver <transaction file> <cumulative fee threshold> [proofs]
+    A file ending in .txc is read with TransactionFile.load instead of Utilities.loadTransactions.
+    Transactions are queued in a FeeBucketLine, so equal fees are blocked in file order.
+*/
+public class LoadDriver
+{
+    /**
+     * Measures allocation on the driving thread.
+     */
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * The heap memory pools, whose peaks are reset before each phase.
+     */
+    private static final List<MemoryPoolMXBean> HEAP_POOLS = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .toList();
+
+    /**
+     * The report, printed in one go so that printing does not disturb the measurements.
+     */
+    private final StringBuilder report = new StringBuilder(1024);
+
+    /**
+     * The wall time at the start of the current phase, in nanoseconds.
+     */
+    private long phaseStart;
+
+    /**
+     * The bytes allocated by the driving thread at the start of the current phase.
+     */
+    private long allocatedAtStart;
+
+    public static void main(String[] args)
+    {
+        if (args.length < 2)
+        {
+            System.err.println("Usage: java LoadDriver <transaction file> <cumulative fee threshold> [proofs]");
+            return;
+        }
+
+        int proofs = args.length > 2 ? Integer.parseInt(args[2]) : Integer.MAX_VALUE;
+        String report = new LoadDriver().run(args[0], Integer.parseInt(args[1]), proofs);
+        System.out.print(report);
+    }
+
+    /**
+     * Runs every phase once.
+     *
+     * @param file is the filename of the transaction file.
+     * @param threshold is the cumulative fee threshold of a block.
+     * @param proofs is the maximum number of proofs to extract and verify.
+     * @return the report.
+     */
+    public String run(String file, int threshold, int proofs)
+    {
+        report.append(String.format("%-10s %12s %10s %14s %14s %14s%n",
+                "phase", "time (ms)", "ops", "ops/s", "alloc (MB/s)", "peak heap (MB)"));
+
+        start();
+        PriorityLine<Transaction> queue = file.endsWith(".txc")
+                ? TransactionFile.load(file, new FeeBucketLine())
+                : Utilities.loadTransactions(file, new FeeBucketLine());
+        if (queue == null)
+        {
+            return report.append("could not load ").append(file).append(System.lineSeparator()).toString();
+        }
+        int transactions = queue.size();
+        finish("load", transactions);
+
+        start();
+        Blockchain chain = new Blockchain(queue, threshold);
+        finish("blockchain", chain.size());
+
+        start();
+        MerkleTree[] trees = new MerkleTree[chain.size()];
+        Block[] blocks = new Block[chain.size()];
+        int b = 0;
+        for (Block block : chain)
+        {
+            blocks[b] = block;
+            trees[b++] = new MerkleTree(block);
+        }
+        finish("merkle", trees.length);
+
+        int n = Math.min(proofs, transactions);
+        Transaction[] proven = new Transaction[n];
+        int[] provenBlock = new int[n];
+        int maxHeight = 0;
+        int p = 0;
+        for (b = 0; b < blocks.length && p < n; b++)
+        {
+            maxHeight = Math.max(maxHeight, trees[b].height());
+            for (Transaction t : blocks[b])
+            {
+                if (p == n) break;
+                proven[p] = t;
+                provenBlock[p++] = b;
+            }
+        }
+        // One buffer reused by every proof, so the phases measure extraction rather than buffer allocation
+        ByteBuffer proofBuffer = ByteBuffer.allocate(CompactProof.encodedLength(maxHeight));
+
+        start();
+        for (int i = 0; i < n; i++)
+        {
+            proofBuffer.clear();
+            trees[provenBlock[i]].extractProof(proven[i], proofBuffer);
+        }
+        finish("proof", n);
+
+        // Proofs are not kept, so each one is extracted again: subtract the proof row for verification alone
+        start();
+        int verified = 0;
+        for (int i = 0; i < n; i++)
+        {
+            proofBuffer.clear();
+            trees[provenBlock[i]].extractProof(proven[i], proofBuffer);
+            proofBuffer.flip();
+            if (Utilities.verifyTransaction(proven[i], proofBuffer, blocks[provenBlock[i]].getRootHash()))
+            {
+                verified++;
+            }
+        }
+        finish("verify", n);
+
+        report.append(String.format("%d transactions, %d blocks, %d of %d proofs verified%n",
+                transactions, blocks.length, verified, n));
+        return report.toString();
+    }
+
+    /**
+     * Starts measuring a phase.
+     */
+    private void start()
+    {
+        for (MemoryPoolMXBean pool : HEAP_POOLS)
+        {
+            pool.resetPeakUsage();
+        }
+        allocatedAtStart = THREADS.getCurrentThreadAllocatedBytes();
+        phaseStart = System.nanoTime();
+    }
+
+    /**
+     * Finishes measuring a phase and adds its row to the report.
+     * The peak heap is the sum of the peaks of the heap pools, which may not have peaked at the same moment.
+     *
+     * @param phase is the name of the phase.
+     * @param ops is the number of operations the phase performed.
+     */
+    private void finish(String phase, int ops)
+    {
+        long elapsed = System.nanoTime() - phaseStart;
+        long allocated = THREADS.getCurrentThreadAllocatedBytes() - allocatedAtStart;
+        long peak = 0;
+        for (MemoryPoolMXBean pool : HEAP_POOLS)
+        {
+            peak += pool.getPeakUsage().getUsed();
+        }
+
+        double seconds = Math.max(elapsed, 1) / 1e9;
+        report.append(String.format("%-10s %12.1f %10d %14.0f %14.1f %14.1f%n",
+                phase, elapsed / 1e6, ops, ops / seconds, allocated / seconds / (1 << 20), peak / (double) (1 << 20)));
+    }
+}
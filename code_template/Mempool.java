@@ -0,0 +1,124 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe, capacity-bounded pool of pending transactions shared by the ingestion connections (producers)
+ * and the block builder (consumer). Transactions leave in fee order, as from a FeeBucketLine.
+ * When the pool is full, producers block instead of dropping transactions, which pushes back on the senders.
+ */
+public class Mempool
+{
+    /**
+     * The pending transactions.
+     */
+    private final PriorityLine<Transaction> pending;
+
+    /**
+     * The maximum number of pending transactions.
+     */
+    private final int capacity;
+
+    /**
+     * Guards pending.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Signalled when a transaction leaves the pool.
+     */
+    private final Condition notFull = lock.newCondition();
+
+    /**
+     * Signalled when a transaction enters the pool.
+     */
+    private final Condition notEmpty = lock.newCondition();
+
+    /**
+     * Creates an empty pool.
+     *
+     * @param capacity The maximum number of pending transactions.
+     * @throws IllegalArgumentException if capacity is not positive.
+     */
+    public Mempool(int capacity)
+    {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.pending = new FeeBucketLine();
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds a transaction, waiting while the pool is full.
+     *
+     * @param t The transaction.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void put(Transaction t) throws InterruptedException
+    {
+        lock.lockInterruptibly();
+        try {
+            while (pending.size() >= capacity) {
+                notFull.await();
+            }
+            pending.enqueue(t);
+            notEmpty.signal();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the highest-fee transaction, waiting up to a timeout for one to arrive.
+     *
+     * @param timeout The longest time to wait.
+     * @param unit The unit of the timeout.
+     * @return The highest-fee transaction, or null if the pool stayed empty.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public Transaction poll(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (pending.isEmpty()) {
+                if (nanos <= 0) return null;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            Transaction t = pending.dequeue();
+            notFull.signal();
+            return t;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of pending transactions.
+     *
+     * @return The number of pending transactions.
+     */
+    public int size()
+    {
+        lock.lock();
+        try {
+            return pending.size();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the maximum number of pending transactions.
+     *
+     * @return The capacity.
+     */
+    public int capacity()
+    {
+        return capacity;
+    }
+}
@@ -1,4 +1,7 @@
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
     - Represents the Merkle Tree of a single Block.
@@ -23,6 +26,31 @@ public class MerkleTree
      */
     private int innerNodes;
 
+    /**
+     * Number of real transactions; the remaining leaves are DUMMY padding.
+     */
+    private int numOfTransactions;
+
+    /**
+     * Optional cache of the proofs served by extractCachedProof; null until enabled.
+     */
+    private volatile ProofCache proofCache;
+
+    /**
+     * Supplies the hash codes of another copy of a Merkle tree, e.g. one held by a remote node,
+     * addressed by position: level 0 is the root, and node i of a level has children 2i and 2i+1 on the next level.
+     */
+    public interface HashSource {
+        /**
+         * Returns the hash code of a node of the other tree.
+         *
+         * @param level The depth of the node, 0 for the root.
+         * @param index The position of the node within its level, from the left.
+         * @return The hash code of that node.
+         */
+        String hashAt(int level, int index);
+    }
+
     /**
      * A node in a binary tree used for constructing a Merkle tree. Each node stores a hash code
      * and has references to its left and right children.
@@ -97,6 +125,7 @@ public class MerkleTree
         Iterator<Transaction> iter = block.iterator();
         int numOfTransactions = block.numOfTransactions();
         int nextPowerOfTwo = nextPowerOfTwo(numOfTransactions);
+        this.numOfTransactions = numOfTransactions;
 
         //Quick bit manipulation to calculate the height of tree.
         this.height = 31 - Integer.numberOfLeadingZeros(nextPowerOfTwo); 
@@ -116,7 +145,7 @@ public class MerkleTree
             String hashCode;
             if (remainingTransactions > 0 && iter.hasNext()) {
                 Transaction transaction = iter.next();
-                hashCode = Utilities.cryptographicHashFunction(transaction.toString());
+                hashCode = transaction.getLeafHash();
             } else {
                 hashCode = Utilities.cryptographicHashFunction("DUMMY");
             }
@@ -146,13 +175,52 @@ public class MerkleTree
         return parent;
     }
     
+    /**
+     * Computes the root hash the Merkle tree of a block would have, without building the tree
+     * and without touching the root hash stored in the block.
+     *
+     * @param block The block containing the transactions.
+     * @return The root hash code of the block's Merkle tree.
+     * @implNote Runs in O(N) time and O(logN) space.
+     */
+    public static String rootHashOf(Block block) {
+        int numOfTransactions = block.numOfTransactions();
+        return rootHashHelper(block.iterator(), numOfTransactions, nextPowerOfTwo(numOfTransactions));
+    }
+
+    /**
+     * Recursively computes the hash code of a subtree the same way buildTreeHelper does, keeping no nodes.
+     *
+     * @param iter                  An iterator over the transactions.
+     * @param remainingTransactions The number of remaining transactions to process.
+     * @param totalNodes            The number of leaves of the subtree.
+     * @return The hash code of the subtree's root.
+     */
+    private static String rootHashHelper(Iterator<Transaction> iter, int remainingTransactions, int totalNodes) {
+        if (totalNodes == 1) {
+            if (remainingTransactions > 0 && iter.hasNext()) {
+                return iter.next().getLeafHash();
+            }
+            return Utilities.cryptographicHashFunction("DUMMY");
+        }
+
+        int halfNodes = totalNodes / 2;
+        int leftTransactions = Math.min(halfNodes, remainingTransactions);
+        int rightTransactions = remainingTransactions - leftTransactions;
+
+        String left = rootHashHelper(iter, leftTransactions, halfNodes);
+        String right = rootHashHelper(iter, rightTransactions, halfNodes);
+
+        return Utilities.cryptographicHashFunction(left, right);
+    }
+
     /**
      * Calculates the next power of two greater than or equal to a given integer.
      *
      * @param n The input integer.
      * @return The next power of two greater than or equal to the input integer.
      */
-    private int nextPowerOfTwo(int n) {
+    private static int nextPowerOfTwo(int n) {
         int count = 0;
     
         // First n in the below condition is for the case where n is 0
@@ -193,73 +261,331 @@ public class MerkleTree
         TIME COMPLEXITY REQUIREMENT: O(N).
     */
     public SinglyLinkedList<String> breadthFirstTraversal() {
-        SinglyLinkedList<String> hashCodes = new SinglyLinkedList<>();
+        return collect(breadthFirstIterator());
+    }
+
+    /**
+        Traverses the tree depth first and returns the hash codes respectively.
+        @param order is an enumeration representing the three possible depth-first traversals   
+        @return a list of the hash codes contained in the tree by walking the tree in a certain order             
+        TIME COMPLEXITY REQUIREMENT: O(N)
+    */
+    public SinglyLinkedList<String> depthFirstTraversal(Order order) {
+        return collect(depthFirstIterator(order));
+    }
+
+    /**
+        Walks the tree breadth first, yielding each hash code only when it is requested.
+        Nothing is materialized beyond the queue of pending nodes, so the walk can stop at any point for free.
+        @return an iterator over the hash codes of the tree in level-order.
+        TIME COMPLEXITY REQUIREMENT: O(1) amortized per hash code.
+    */
+    public Iterator<String> breadthFirstIterator() {
         SinglyLinkedList<Node> nodeQueue = new SinglyLinkedList<>(); // Using it like a queue
-        
         if (root != null) {
             nodeQueue.add(root);
         }
-        
-        while (nodeQueue.size() > 0) {
-            Node currentNode = nodeQueue.remove(0); // Dequeue the front node
-            hashCodes.add(currentNode.hashCode);
-            
-            if (currentNode.left != null) {
-                nodeQueue.add(currentNode.left); // Enqueue left child
+
+        return new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return !nodeQueue.isEmpty();
             }
-            
-            if (currentNode.right != null) {
-                nodeQueue.add(currentNode.right); // Enqueue right child
+
+            @Override
+            public String next() {
+                if (nodeQueue.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+
+                Node currentNode = nodeQueue.remove(0); // Dequeue the front node
+
+                if (currentNode.left != null) {
+                    nodeQueue.add(currentNode.left); // Enqueue left child
+                }
+
+                if (currentNode.right != null) {
+                    nodeQueue.add(currentNode.right); // Enqueue right child
+                }
+
+                return currentNode.hashCode;
             }
-        }
-        
-        return hashCodes;
+        };
     }
 
     /**
-        Traverses the tree depth first and returns the hash codes respectively.
-        @param order is an enumeration representing the three possible depth-first traversals   
-        @return a list of the hash codes contained in the tree by walking the tree in a certain order             
-        You MUST use recursion for this method; zero points if it's not recursive!
-        TIME COMPLEXITY REQUIREMENT: O(N)
+        Walks the tree depth first, yielding each hash code only when it is requested.
+        The walk uses an explicit stack bounded by the height of the tree instead of recursion,
+        and can stop at any point for free.
+        @param order is an enumeration representing the three possible depth-first traversals
+        @return an iterator over the hash codes of the tree in the given order.
+        TIME COMPLEXITY REQUIREMENT: O(1) amortized per hash code.
     */
-    public SinglyLinkedList<String> depthFirstTraversal(Order order) {
+    public Iterator<String> depthFirstIterator(Order order) {
+        return new DepthFirstIterator(order);
+    }
+
+    /**
+     * Drains an iterator of hash codes into a list.
+     *
+     * @param iter The iterator to drain.
+     * @return A list of the hash codes in iteration order.
+     */
+    private static SinglyLinkedList<String> collect(Iterator<String> iter) {
         SinglyLinkedList<String> hashCodes = new SinglyLinkedList<>();
-        depthFirstTraversalHelper(root, hashCodes, order);
+        while (iter.hasNext()) {
+            hashCodes.add(iter.next());
+        }
         return hashCodes;
     }
-    
+
     /**
-     * Performs a depth-first traversal of the binary tree starting from the given node and
-     * appends the hash codes of nodes to the provided singly-linked list based on the specified order.
+     * Lazily walks the tree depth first using an explicit stack of the nodes on the current path.
+     */
+    private class DepthFirstIterator implements Iterator<String> {
+        /**
+         * The order in which nodes are visited.
+         */
+        private final Order order;
+
+        /**
+         * The stack of pending nodes; its top is the last element.
+         */
+        private final SinglyLinkedList<Node> stack = new SinglyLinkedList<>();
+
+        /**
+         * The next node whose left spine has to be pushed (in-order and post-order only).
+         */
+        private Node current;
+
+        /**
+         * The node returned last (post-order only).
+         */
+        private Node lastVisited;
+
+        /**
+         * Starts a walk from the root.
+         *
+         * @param order The order in which nodes are visited.
+         */
+        DepthFirstIterator(Order order) {
+            this.order = order;
+            if (order == Order.PREORDER) {
+                if (root != null) stack.add(root);
+            }
+            else {
+                current = root;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return current != null || !stack.isEmpty();
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            switch (order) {
+                case PREORDER:
+                    return nextPreorder();
+                case INORDER:
+                    return nextInorder();
+                default:
+                    return nextPostorder();
+            }
+        }
+
+        /**
+         * Visits the next node in pre-order (root, left, right).
+         * @return The hash code of the visited node.
+         */
+        private String nextPreorder() {
+            Node node = pop();
+            if (node.right != null) stack.add(node.right);
+            if (node.left != null) stack.add(node.left);
+            return node.hashCode;
+        }
+
+        /**
+         * Visits the next node in in-order (left, root, right).
+         * @return The hash code of the visited node.
+         */
+        private String nextInorder() {
+            pushLeftSpine();
+            Node node = pop();
+            current = node.right;
+            return node.hashCode;
+        }
+
+        /**
+         * Visits the next node in post-order (left, right, root).
+         * @return The hash code of the visited node.
+         */
+        private String nextPostorder() {
+            while (true) {
+                pushLeftSpine();
+                Node top = stack.get(stack.size() - 1);
+                if (top.right != null && top.right != lastVisited) {
+                    current = top.right;
+                }
+                else {
+                    pop();
+                    lastVisited = top;
+                    return top.hashCode;
+                }
+            }
+        }
+
+        /**
+         * Pushes the current node and its chain of left children.
+         */
+        private void pushLeftSpine() {
+            while (current != null) {
+                stack.add(current);
+                current = current.left;
+            }
+        }
+
+        /**
+         * Pops the top of the stack.
+         * @return The popped node.
+         */
+        private Node pop() {
+            return stack.remove(stack.size() - 1);
+        }
+    }
+
+    /**
+        Compares this tree with another tree of the same height and returns the leaf positions whose hash codes differ.
+        The comparison starts at the roots and only descends into subtrees whose hash codes differ, so
+        O(k logN) hash codes are compared for k differing leaves.
+        @param other The tree to compare with, typically built from another copy of the same block.
+        @return the positions of the differing leaves in ascending order, empty if the roots match.
+        @throws IllegalArgumentException if the trees have different heights.
+        TIME COMPLEXITY REQUIREMENT: O(k logN)
+    */
+    public SinglyLinkedList<Integer> diff(MerkleTree other) {
+        if (other.height != this.height) {
+            throw new IllegalArgumentException("trees of different heights cannot be compared position by position");
+        }
+
+        SinglyLinkedList<Integer> positions = new SinglyLinkedList<>();
+        diffHelper(this.root, other.root, 0, positions);
+        return positions;
+    }
+
+    /**
+        Compares this tree with a tree that is only reachable through its hash codes, e.g. a remote copy of the block,
+        and returns the leaf positions whose hash codes differ. Only the nodes of differing subtrees are requested,
+        so the source is asked for O(k logN) hash codes for k differing leaves.
+        @param remote The source of the other tree's hash codes; it must describe a tree of the same height.
+        @return the positions of the differing leaves in ascending order, empty if the roots match.
+        TIME COMPLEXITY REQUIREMENT: O(k logN)
+    */
+    public SinglyLinkedList<Integer> diff(HashSource remote) {
+        SinglyLinkedList<Integer> positions = new SinglyLinkedList<>();
+        diffHelper(this.root, 0, 0, remote, positions);
+        return positions;
+    }
+
+    /**
+     * Recursively collects the differing leaves below two nodes at the same position of two trees.
      *
-     * @param node  The starting node for the traversal.
-     * @param list  The singly-linked list where hash codes are appended.
-     * @param order The order in which nodes are visited (PREORDER, INORDER, POSTORDER).
-     * 
+     * @param node      The node of this tree.
+     * @param other     The node of the other tree.
+     * @param index     The position of the nodes within their level.
+     * @param positions The list where differing leaf positions are added.
      */
-    private void depthFirstTraversalHelper(Node node, SinglyLinkedList<String> list, Order order) {
-        if (node == null) {
+    private void diffHelper(Node node, Node other, int index, SinglyLinkedList<Integer> positions) {
+        if (node.hashCode.equals(other.hashCode)) {
             return;
         }
-        
-        switch (order) {
-            case PREORDER:
-                list.add(node.hashCode);
-                depthFirstTraversalHelper(node.left, list, order);
-                depthFirstTraversalHelper(node.right, list, order);
-                break;
-            case INORDER:
-                depthFirstTraversalHelper(node.left, list, order);
-                list.add(node.hashCode);
-                depthFirstTraversalHelper(node.right, list, order);
-                break;
-            case POSTORDER:
-                depthFirstTraversalHelper(node.left, list, order);
-                depthFirstTraversalHelper(node.right, list, order);
-                list.add(node.hashCode);
-                break;
+
+        if (node.left == null) {
+            positions.add(index);
+            return;
+        }
+
+        diffHelper(node.left, other.left, 2 * index, positions);
+        diffHelper(node.right, other.right, 2 * index + 1, positions);
+    }
+
+    /**
+     * Recursively collects the differing leaves below a node of this tree and the node at the same position of a source.
+     *
+     * @param node      The node of this tree.
+     * @param level     The depth of the node.
+     * @param index     The position of the node within its level.
+     * @param remote    The source of the other tree's hash codes.
+     * @param positions The list where differing leaf positions are added.
+     */
+    private void diffHelper(Node node, int level, int index, HashSource remote, SinglyLinkedList<Integer> positions) {
+        if (node.hashCode.equals(remote.hashAt(level, index))) {
+            return;
+        }
+
+        if (node.left == null) {
+            positions.add(index);
+            return;
+        }
+
+        diffHelper(node.left, level + 1, 2 * index, remote, positions);
+        diffHelper(node.right, level + 1, 2 * index + 1, remote, positions);
+    }
+
+    /**
+        Returns the proof that the transactions at positions [from, to) of the block are contained in it.
+        The proof holds the hash codes of the maximal subtrees lying entirely outside the range, so its size is O(logN)
+        however long the range is. Only the paths to the two boundaries of the range are visited.
+        @param from The position of the first transaction of the range.
+        @param to One past the position of the last transaction of the range.
+        @return the range proof, to be checked with Utilities.verifyRange.
+        @throws IndexOutOfBoundsException if the range is empty or not within the block's transactions.
+        TIME COMPLEXITY REQUIREMENT: O(logN)
+    */
+    public RangeProof extractRangeProof(int from, int to) {
+        if (from < 0 || to > numOfTransactions || from >= to) {
+            throw new IndexOutOfBoundsException("invalid range [" + from + ", " + to + ")");
+        }
+
+        SinglyLinkedList<String> hashes = new SinglyLinkedList<>();
+        extractRangeProofHelper(root, 0, 1 << height, from, to, hashes);
+
+        String[] proof = new String[hashes.size()];
+        for (int i = 0; i < proof.length; i++) {
+            proof[i] = hashes.get(i);
+        }
+        return new RangeProof(height, from, to, proof);
+    }
+
+    /**
+     * Recursively collects, left to right, the hash codes of the maximal subtrees outside a range of leaves.
+     *
+     * @param node   The root of the subtree.
+     * @param first  The position of the first leaf of the subtree.
+     * @param leaves The number of leaves of the subtree.
+     * @param from   The position of the first leaf of the range.
+     * @param to     One past the position of the last leaf of the range.
+     * @param hashes The list where the hash codes are added.
+     */
+    private void extractRangeProofHelper(Node node, int first, int leaves, int from, int to, SinglyLinkedList<String> hashes) {
+        if (first + leaves <= from || first >= to) {
+            hashes.add(node.hashCode);
+            return;
         }
+
+        // A subtree inside the range is rebuilt by the verifier from the transactions themselves
+        if (from <= first && first + leaves <= to) {
+            return;
+        }
+
+        int half = leaves / 2;
+        extractRangeProofHelper(node.left, first, half, from, to, hashes);
+        extractRangeProofHelper(node.right, first + half, half, from, to, hashes);
     }
 
     /**
@@ -273,10 +599,84 @@ public class MerkleTree
     */
     public SinglyLinkedList<String> extractProof(Transaction t) {
         SinglyLinkedList<String> proofList = new SinglyLinkedList<>();
-        extractProofHelper(root, Utilities.cryptographicHashFunction(t.toString()), proofList);
+        extractProofHelper(root, t.getLeafHash(), proofList);
         return proofList;
     }
 
+    /**
+        Writes the proof of a transaction in the binary CompactProof format at the buffer's position and advances it.
+        It holds the same sibling hashes as extractProof, as raw bytes, plus the side of each sibling.
+        The siblings are decoded from the tree's nodes straight into the buffer; no list is built.
+        @param t The transaction we want to verify exists within the merkle tree.
+        @param out The buffer to write to; it needs CompactProof.encodedLength(height()) bytes remaining.
+        @return true if the transaction was found and its proof written, false otherwise (nothing is written).
+        @throws BufferOverflowException if the buffer is too small.
+        TIME COMPLEXITY REQUIREMENT: O(N)
+    */
+    public boolean extractProof(Transaction t, ByteBuffer out) {
+        if (height > CompactProof.MAX_DEPTH) {
+            throw new IllegalArgumentException("proof deeper than " + CompactProof.MAX_DEPTH);
+        }
+        int start = out.position();
+        if (out.remaining() < CompactProof.encodedLength(height)) {
+            throw new BufferOverflowException();
+        }
+
+        int directions = encodeProofHelper(root, 0, t.getLeafHash(), out, start + CompactProof.HEADER_LENGTH);
+        if (directions < 0) {
+            return false;
+        }
+
+        CompactProof.putHeader(height, directions, out, start);
+        out.position(start + CompactProof.encodedLength(height));
+        return true;
+    }
+
+    /**
+        Attaches a bounded LRU proof cache to this tree, replacing any previous one.
+        @param capacity The maximum number of proofs kept.
+        @return the new cache, whose hit ratio can be monitored.
+    */
+    public ProofCache enableProofCache(int capacity) {
+        ProofCache cache = new ProofCache(capacity);
+        this.proofCache = cache;
+        return cache;
+    }
+
+    /**
+        Returns the proof cache attached to this tree.
+        @return the cache, or null if enableProofCache has not been called.
+    */
+    public ProofCache getProofCache() {
+        return proofCache;
+    }
+
+    /**
+        Returns the binary proof of a transaction, served from the proof cache when possible.
+        On a miss the proof is extracted as with extractProof(Transaction, ByteBuffer) and cached.
+        Several threads may call this method at the same time.
+        @param t The transaction we want to verify exists within the merkle tree.
+        @return a read-only buffer holding the proof in the CompactProof format, or null if the transaction is not in the tree.
+        TIME COMPLEXITY REQUIREMENT: O(1) on a cache hit, O(N) otherwise
+    */
+    public ByteBuffer extractCachedProof(Transaction t) {
+        ProofCache cache = proofCache;
+        if (cache != null) {
+            ByteBuffer cached = cache.get(t.leafDigest());
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        ByteBuffer proof = ByteBuffer.allocate(CompactProof.encodedLength(height));
+        if (!extractProof(t, proof)) {
+            return null;
+        }
+        proof.flip();
+
+        return cache != null ? cache.put(t.leafDigest(), proof) : proof.asReadOnlyBuffer();
+    }
+
     /**
      * Recursively searches for a transaction hash in the binary tree starting from the given node.
      * If found, it adds the hash codes of sibling nodes along the path to the provided singly-linked list as a Merkle proof.
@@ -284,34 +684,79 @@ public class MerkleTree
      * @param node            The starting node for the search.
      * @param transactionHash The hash code of the transaction to search for.
      * @param proofList       The singly-linked list where sibling hash codes are added as proof.
-     * @return True if the transaction hash is found, false otherwise.
+     * @return -1 if the transaction hash is not found, otherwise a bitmask with bit i set when the i-th sibling added is a left child.
      */
-    private boolean extractProofHelper(Node node, String transactionHash, SinglyLinkedList<String> proofList) {
+    private int extractProofHelper(Node node, String transactionHash, SinglyLinkedList<String> proofList) {
         if (node == null) {
-            return false;
+            return -1;
         }
     
         if (node.hashCode.equals(transactionHash)) {
-            return true;
+            return 0;
         }
     
         // Check the left subtree first
-        if (extractProofHelper(node.left, transactionHash, proofList)) {
+        int directions = extractProofHelper(node.left, transactionHash, proofList);
+        if (directions >= 0) {
             if (node.right != null) {
                 proofList.add(node.right.hashCode);
             }
-            return true;
+            return directions;
         }
     
         // If not found in the left, check the right subtree
-        if (extractProofHelper(node.right, transactionHash, proofList)) {
+        directions = extractProofHelper(node.right, transactionHash, proofList);
+        if (directions >= 0) {
             if (node.left != null) {
+                directions |= 1 << proofList.size();
                 proofList.add(node.left.hashCode);
             }
-            return true;
+            return directions;
         }
     
-        return false;
+        return -1;
+    }
+
+    /**
+     * Recursively searches for a transaction hash like extractProofHelper, but writes each sibling hash code
+     * as raw bytes straight into a CompactProof buffer instead of collecting the Strings in a list.
+     * The tree is perfect, so the sibling of a node at depth d is at level height - 1 - d of the proof.
+     * Nothing is written unless the transaction is found.
+     *
+     * @param node            The starting node for the search.
+     * @param depth           The depth of the node, 0 for the root.
+     * @param transactionHash The hash code of the transaction to search for.
+     * @param out             The buffer to write the siblings to.
+     * @param siblingsStart   The index in the buffer of the deepest sibling.
+     * @return -1 if the transaction hash is not found, otherwise a bitmask with bit i set when the sibling at level i is a left child.
+     */
+    private int encodeProofHelper(Node node, int depth, String transactionHash, ByteBuffer out, int siblingsStart) {
+        if (node == null) {
+            return -1;
+        }
+
+        if (node.hashCode.equals(transactionHash)) {
+            return 0;
+        }
+
+        int level = height - 1 - depth;
+        int siblingIndex = siblingsStart + level * CompactProof.SIBLING_LENGTH;
+
+        // Check the left subtree first
+        int directions = encodeProofHelper(node.left, depth + 1, transactionHash, out, siblingsStart);
+        if (directions >= 0) {
+            CompactProof.putHex(node.right.hashCode, out, siblingIndex);
+            return directions;
+        }
+
+        // If not found in the left, check the right subtree
+        directions = encodeProofHelper(node.right, depth + 1, transactionHash, out, siblingsStart);
+        if (directions >= 0) {
+            CompactProof.putHex(node.left.hashCode, out, siblingIndex);
+            return directions | 1 << level;
+        }
+
+        return -1;
     }
 
 }
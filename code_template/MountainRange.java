@@ -0,0 +1,252 @@
+/**
+ * An append-only Merkle Mountain Range over a sequence of hash codes (the block root hashes of a Blockchain).
+ * The leaves are grouped into perfect binary trees ("mountains") of decreasing height, one per set bit of the
+ * leaf count. The commitment to all leaves is the hash obtained by bagging the mountain peaks from right to left.
+ * Appending a leaf and proving that a leaf is included both take O(logB) hashes for B leaves.
+ */
+public class MountainRange
+{
+    /**
+     * The maximum number of levels, enough for any int leaf count.
+     */
+    private static final int MAX_LEVELS = 32;
+
+    /**
+     * The nodes of every level; level 0 holds the leaves and node j of level h combines nodes 2j and 2j+1 of level h-1.
+     */
+    private final SinglyLinkedList<String>[] levels;
+
+    /**
+     * The number of leaves.
+     */
+    private int size;
+
+    /**
+     * A proof that a leaf belongs to the range committed to by a given commitment.
+     */
+    public static final class Proof
+    {
+        /**
+         * The position of the leaf.
+         */
+        private final int leafIndex;
+
+        /**
+         * The number of leaves in the range when the proof was made.
+         */
+        private final int leafCount;
+
+        /**
+         * The sibling hash codes from the leaf up to its peak, deepest first.
+         */
+        private final String[] siblings;
+
+        /**
+         * The hash codes of all peaks, highest mountain first.
+         */
+        private final String[] peaks;
+
+        /**
+         * Creates a proof.
+         *
+         * @param leafIndex The position of the leaf.
+         * @param leafCount The number of leaves.
+         * @param siblings The sibling hash codes, deepest first.
+         * @param peaks The peak hash codes, highest mountain first.
+         */
+        private Proof(int leafIndex, int leafCount, String[] siblings, String[] peaks)
+        {
+            this.leafIndex = leafIndex;
+            this.leafCount = leafCount;
+            this.siblings = siblings;
+            this.peaks = peaks;
+        }
+
+        /**
+         * @return the position of the proven leaf.
+         */
+        public int leafIndex()
+        {
+            return leafIndex;
+        }
+
+        /**
+         * @return the number of leaves in the range when the proof was made.
+         */
+        public int leafCount()
+        {
+            return leafCount;
+        }
+
+        /**
+         * @return the number of hash codes in the proof.
+         */
+        public int size()
+        {
+            return siblings.length + peaks.length;
+        }
+    }
+
+    /**
+     * Creates an empty range.
+     */
+    @SuppressWarnings("unchecked")
+    public MountainRange()
+    {
+        this.levels = (SinglyLinkedList<String>[]) new SinglyLinkedList<?>[MAX_LEVELS];
+        for (int h = 0; h < MAX_LEVELS; h++) {
+            levels[h] = new SinglyLinkedList<>();
+        }
+    }
+
+    /**
+     * Appends a leaf, merging equal-height mountains as in a binary counter increment.
+     *
+     * @param hashCode The hash code of the new leaf.
+     * @return The position of the new leaf.
+     * @implNote This operation has a time complexity of O(logB).
+     */
+    public int append(String hashCode)
+    {
+        levels[0].add(hashCode);
+
+        for (int h = 0; levels[h].size() % 2 == 0; h++) {
+            int last = levels[h].size() - 1;
+            levels[h + 1].add(Utilities.cryptographicHashFunction(levels[h].get(last - 1), levels[h].get(last)));
+        }
+
+        return size++;
+    }
+
+    /**
+     * Returns the number of leaves.
+     *
+     * @return The number of leaves.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Computes the commitment to all leaves by bagging the peaks.
+     *
+     * @return The commitment hash code, or an empty string if the range is empty.
+     * @implNote This operation has a time complexity of O(logB).
+     */
+    public String root()
+    {
+        return bag(peaks());
+    }
+
+    /**
+     * Proves that the leaf at a given position belongs to the range.
+     *
+     * @param leafIndex The position of the leaf.
+     * @return The inclusion proof, valid against the current root().
+     * @throws IndexOutOfBoundsException if the position is out of bounds.
+     * @implNote This operation has a time complexity of O(logB).
+     */
+    public Proof prove(int leafIndex)
+    {
+        if (leafIndex < 0 || leafIndex >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        // The leaf's mountain has height h where leafIndex falls into that mountain's range of leaves
+        int height = mountainHeight(leafIndex, size);
+        String[] siblings = new String[height];
+
+        int j = leafIndex;
+        for (int h = 0; h < height; h++) {
+            siblings[h] = levels[h].get(j ^ 1);
+            j >>>= 1;
+        }
+
+        return new Proof(leafIndex, size, siblings, peaks());
+    }
+
+    /**
+     * Verifies that a leaf belongs to the range committed to by a commitment.
+     *
+     * @param hashCode The hash code of the leaf.
+     * @param proof The proof returned by prove.
+     * @param commitment The root of the range, e.g. Blockchain.getChainCommitment().
+     * @return true if the leaf is proven to be at the proof's position, false otherwise.
+     * @implNote This operation has a time complexity of O(logB).
+     */
+    public static boolean verify(String hashCode, Proof proof, String commitment)
+    {
+        int leafCount = proof.leafCount;
+        int leafIndex = proof.leafIndex;
+        if (leafIndex < 0 || leafIndex >= leafCount
+                || proof.peaks.length != Integer.bitCount(leafCount)
+                || proof.siblings.length != mountainHeight(leafIndex, leafCount)) {
+            return false;
+        }
+
+        String current = hashCode;
+        for (int h = 0; h < proof.siblings.length; h++) {
+            current = (leafIndex >>> h & 1) == 0
+                    ? Utilities.cryptographicHashFunction(current, proof.siblings[h])
+                    : Utilities.cryptographicHashFunction(proof.siblings[h], current);
+        }
+
+        // The leaf's peak comes after every higher mountain, i.e. after the set bits above its height
+        int peakPosition = Integer.bitCount(leafCount >>> proof.siblings.length) - 1;
+        if (!proof.peaks[peakPosition].equals(current)) {
+            return false;
+        }
+
+        return bag(proof.peaks).equals(commitment);
+    }
+
+    /**
+     * Finds the height of the mountain holding a leaf.
+     *
+     * @param leafIndex The position of the leaf.
+     * @param leafCount The number of leaves.
+     * @return The height of the mountain.
+     */
+    private static int mountainHeight(int leafIndex, int leafCount) {
+        int start = 0;
+        for (int h = 31 - Integer.numberOfLeadingZeros(leafCount); h >= 0; h--) {
+            if ((leafCount >>> h & 1) == 0) continue;
+            start += 1 << h;
+            if (leafIndex < start) return h;
+        }
+        throw new IndexOutOfBoundsException();
+    }
+
+    /**
+     * Collects the peaks; level h holds a peak exactly when bit h of the leaf count is set.
+     *
+     * @return The peak hash codes, highest mountain first.
+     */
+    private String[] peaks() {
+        String[] peaks = new String[Integer.bitCount(size)];
+        int p = 0;
+        for (int h = MAX_LEVELS - 1; h >= 0; h--) {
+            if ((size >>> h & 1) != 0) {
+                peaks[p++] = levels[h].get(levels[h].size() - 1);
+            }
+        }
+        return peaks;
+    }
+
+    /**
+     * Folds the peaks from right to left into a single hash code.
+     *
+     * @param peaks The peak hash codes, highest mountain first.
+     * @return The bagged hash code, or an empty string if there are no peaks.
+     */
+    private static String bag(String[] peaks) {
+        if (peaks.length == 0) return "";
+
+        String bagged = peaks[peaks.length - 1];
+        for (int p = peaks.length - 2; p >= 0; p--) {
+            bagged = Utilities.cryptographicHashFunction(peaks[p], bagged);
+        }
+        return bagged;
+    }
+}
@@ -0,0 +1,461 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A Merkle Tree whose node digests live outside the Java heap, for blocks with tens of millions of transactions.
+ * It produces the same hash codes as MerkleTree and answers the same queries, but instead of one Node object
+ * and one String per node it keeps raw 32-byte digests in an arena of direct ByteBuffers. The tree is stored
+ * implicitly: node i has children 2i and 2i+1, the root is node 1 and the leaves are nodes P through 2P-1,
+ * where P is the number of leaves. Hash code Strings are only created for the results of queries.
+ *
+ * close() drops the arena; hash codes and proofs cannot be queried afterwards. Note that this does not free
+ * the native memory at that point: direct ByteBuffers have no explicit release, so the memory is returned only
+ * when the garbage collector collects the buffers (a System.gc() or enough heap pressure). A process that
+ * builds many large trees should size -XX:MaxDirectMemorySize for the trees that may await collection.
+ */
+public class OffHeapMerkleTree implements AutoCloseable
+{
+    /**
+     * The length in bytes of a node digest.
+     */
+    private static final int DIGEST_LENGTH = 32;
+
+    /**
+     * Reads a digest as big-endian longs, the byte order of the arena's buffers.
+     */
+    private static final VarHandle WORD = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    /**
+     * Log2 of the number of nodes per arena chunk (32 MiB chunks).
+     */
+    private static final int CHUNK_SHIFT = 20;
+
+    /**
+     * The mask selecting the position of a node inside its chunk.
+     */
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+    /**
+     * The largest number of transactions, so that the 2P node indices of P leaves fit in an int.
+     */
+    private static final int MAX_TRANSACTIONS = 1 << 29;
+
+    /**
+     * The arena holding the node digests, indexed by node number; null once the tree is closed.
+     */
+    private ByteBuffer[] chunks;
+
+    /**
+     * The number of leaves, a power of two.
+     */
+    private final int leaves;
+
+    /**
+     * The number of real transactions; the other leaves are DUMMY padding.
+     */
+    private final int transactions;
+
+    /**
+     * Height of the tree.
+     */
+    private final int height;
+
+    /**
+     * Builds the tree of a block off-heap and sends the root hash to the block via block.setRootHash().
+     *
+     * @param block is the Block that the Merkle Tree will be created for.
+     * @throws IllegalArgumentException if the block holds more than 2^29 transactions.
+     * TIME COMPLEXITY REQUIREMENT: O(N).
+     * SPACE COMPLEXITY REQUIREMENT: O(N) off-heap, O(1) on-heap.
+     */
+    public OffHeapMerkleTree(Block block)
+    {
+        int numOfTransactions = block.numOfTransactions();
+        if (numOfTransactions > MAX_TRANSACTIONS) {
+            throw new IllegalArgumentException("too many transactions for one tree");
+        }
+
+        this.transactions = numOfTransactions;
+        this.leaves = numOfTransactions <= 1 ? 1 : Integer.highestOneBit(numOfTransactions - 1) << 1;
+        this.height = Integer.numberOfTrailingZeros(leaves);
+
+        int nodes = 2 * leaves;
+        int chunkCount = ((nodes - 1) >>> CHUNK_SHIFT) + 1;
+        this.chunks = new ByteBuffer[chunkCount];
+        for (int c = 0; c < chunkCount; c++) {
+            int chunkNodes = Math.min(1 << CHUNK_SHIFT, nodes - (c << CHUNK_SHIFT));
+            chunks[c] = ByteBuffer.allocateDirect(chunkNodes * DIGEST_LENGTH);
+        }
+
+        build(block);
+        block.setRootHash(hashCodeOf(1));
+    }
+
+    /**
+     * Hashes the leaves, then every inner node bottom-up, reusing two scratch digests.
+     *
+     * @param block The block containing the transactions.
+     */
+    private void build(Block block) {
+        int leaf = leaves;
+        for (Transaction transaction : block) {
+            if (leaf == leaves + transactions) break;
+            write(leaf++, transaction.leafDigest());
+        }
+
+        byte[] dummy = Utilities.digest("DUMMY");
+        while (leaf < 2 * leaves) {
+            write(leaf++, dummy);
+        }
+
+        byte[] left = new byte[DIGEST_LENGTH];
+        byte[] right = new byte[DIGEST_LENGTH];
+        for (int node = leaves - 1; node >= 1; node--) {
+            read(2 * node, left);
+            read(2 * node + 1, right);
+            Utilities.combineDigests(left, right, left);
+            write(node, left);
+        }
+    }
+
+    /**
+        Returns the height of the tree.
+        @return the height of the tree.
+        TIME COMPLEXITY REQUIREMENT: O(1).
+    */
+    public int height()
+    {
+        return height;
+    }
+
+    /**
+        Returns the number of inner nodes.
+        @return the number of inner nodes in the tree.
+        TIME COMPLEXITY REQUIREMENT: O(1).
+    */
+    public int innerNodes()
+    {
+        return leaves - 1;
+    }
+
+    /**
+     * Returns the number of off-heap bytes held by the tree.
+     *
+     * @return the size of the arena in bytes.
+     */
+    public long storageBytes()
+    {
+        return 2L * leaves * DIGEST_LENGTH;
+    }
+
+    /**
+        Traverses the tree breadth first and returns the hash codes respectively.
+        @return a list of the hash codes contained in the tree by walking the tree in a level-order.
+        TIME COMPLEXITY REQUIREMENT: O(N).
+    */
+    public SinglyLinkedList<String> breadthFirstTraversal()
+    {
+        return collect(breadthFirstIterator());
+    }
+
+    /**
+        Traverses the tree depth first and returns the hash codes respectively.
+        @param order is an enumeration representing the three possible depth-first traversals
+        @return a list of the hash codes contained in the tree by walking the tree in a certain order
+        TIME COMPLEXITY REQUIREMENT: O(N)
+    */
+    public SinglyLinkedList<String> depthFirstTraversal(Order order)
+    {
+        return collect(depthFirstIterator(order));
+    }
+
+    /**
+        Walks the tree breadth first, yielding each hash code only when it is requested.
+        In the implicit layout the level-order is simply the order of the node numbers.
+        @return an iterator over the hash codes of the tree in level-order.
+        TIME COMPLEXITY REQUIREMENT: O(1) per hash code.
+    */
+    public Iterator<String> breadthFirstIterator()
+    {
+        checkOpen();
+
+        return new Iterator<String>() {
+            private int node = 1;
+
+            @Override
+            public boolean hasNext() {
+                return node < 2 * leaves;
+            }
+
+            @Override
+            public String next() {
+                if (node >= 2 * leaves) {
+                    throw new NoSuchElementException();
+                }
+                return hashCodeOf(node++);
+            }
+        };
+    }
+
+    /**
+        Walks the tree depth first, yielding each hash code only when it is requested.
+        The walk uses an explicit stack of node numbers bounded by the height of the tree.
+        @param order is an enumeration representing the three possible depth-first traversals
+        @return an iterator over the hash codes of the tree in the given order.
+        TIME COMPLEXITY REQUIREMENT: O(1) amortized per hash code.
+    */
+    public Iterator<String> depthFirstIterator(Order order)
+    {
+        checkOpen();
+        return new DepthFirstIterator(order);
+    }
+
+    /**
+        Returns the hash codes required to prove that a transaction is contained in the block, deepest first,
+        exactly like MerkleTree.extractProof.
+        @param t The transaction we want to verify exists within the merkle tree.
+        @return a list of the sibling hash codes, empty if the transaction is not in the tree.
+        TIME COMPLEXITY REQUIREMENT: O(N)
+    */
+    public SinglyLinkedList<String> extractProof(Transaction t)
+    {
+        SinglyLinkedList<String> proofList = new SinglyLinkedList<>();
+        int leaf = findLeaf(t);
+        if (leaf < 0) {
+            return proofList;
+        }
+
+        for (int node = leaf; node > 1; node >>>= 1) {
+            proofList.add(hashCodeOf(node ^ 1));
+        }
+        return proofList;
+    }
+
+    /**
+        Writes the proof of a transaction in the binary CompactProof format at the buffer's position and advances it.
+        The sibling digests are copied from the arena without going through Strings.
+        @param t The transaction we want to verify exists within the merkle tree.
+        @param out The buffer to write to; it needs CompactProof.encodedLength(height()) bytes remaining.
+        @return true if the transaction was found and its proof written, false otherwise (nothing is written).
+        @throws BufferOverflowException if the buffer is too small.
+        TIME COMPLEXITY REQUIREMENT: O(N)
+    */
+    public boolean extractProof(Transaction t, ByteBuffer out)
+    {
+        if (out.remaining() < CompactProof.encodedLength(height)) {
+            throw new BufferOverflowException();
+        }
+        int leaf = findLeaf(t);
+        if (leaf < 0) {
+            return false;
+        }
+
+        // The sibling of a node is a left child exactly when the node itself is a right child
+        out.put((byte) height);
+        out.putInt(leaf - leaves);
+
+        int index = out.position();
+        for (int node = leaf; node > 1; node >>>= 1) {
+            out.put(index, chunks[(node ^ 1) >>> CHUNK_SHIFT], ((node ^ 1) & CHUNK_MASK) * DIGEST_LENGTH, DIGEST_LENGTH);
+            index += DIGEST_LENGTH;
+        }
+        out.position(index);
+        return true;
+    }
+
+    /**
+     * Drops the arena. The direct buffers become unreachable and their native memory is returned
+     * only once the garbage collector collects them; hash codes and proofs cannot be queried afterwards.
+     * Closing twice has no effect.
+     */
+    @Override
+    public void close()
+    {
+        chunks = null;
+    }
+
+    /**
+     * Finds the first leaf holding a transaction's digest.
+     *
+     * @param t The transaction.
+     * @return The node number of the leaf, or -1 if the transaction is not in the tree.
+     */
+    private int findLeaf(Transaction t) {
+        checkOpen();
+
+        // Compared a word at a time in the arena, so the search copies nothing
+        byte[] target = t.leafDigest();
+        long w0 = (long) WORD.get(target, 0);
+        long w1 = (long) WORD.get(target, 8);
+        long w2 = (long) WORD.get(target, 16);
+        long w3 = (long) WORD.get(target, 24);
+        for (int leaf = leaves; leaf < leaves + transactions; leaf++) {
+            ByteBuffer chunk = chunks[leaf >>> CHUNK_SHIFT];
+            int offset = (leaf & CHUNK_MASK) * DIGEST_LENGTH;
+            if (chunk.getLong(offset) == w0 && chunk.getLong(offset + 8) == w1
+                    && chunk.getLong(offset + 16) == w2 && chunk.getLong(offset + 24) == w3) {
+                return leaf;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Fails if the tree has been closed.
+     */
+    private void checkOpen() {
+        if (chunks == null) {
+            throw new IllegalStateException("tree has been closed");
+        }
+    }
+
+    /**
+     * Reads the hash code of a node.
+     *
+     * @param node The node number.
+     * @return The hexadecimal hash code.
+     */
+    private String hashCodeOf(int node) {
+        byte[] digest = new byte[DIGEST_LENGTH];
+        read(node, digest);
+        return Utilities.toHex(digest);
+    }
+
+    /**
+     * Copies the digest of a node out of the arena.
+     *
+     * @param node The node number.
+     * @param dst The array receiving the digest.
+     */
+    private void read(int node, byte[] dst) {
+        checkOpen();
+        chunks[node >>> CHUNK_SHIFT].get((node & CHUNK_MASK) * DIGEST_LENGTH, dst);
+    }
+
+    /**
+     * Copies a digest into the arena.
+     *
+     * @param node The node number.
+     * @param src The digest.
+     */
+    private void write(int node, byte[] src) {
+        chunks[node >>> CHUNK_SHIFT].put((node & CHUNK_MASK) * DIGEST_LENGTH, src);
+    }
+
+    /**
+     * Drains an iterator of hash codes into a list.
+     *
+     * @param iter The iterator to drain.
+     * @return A list of the hash codes in iteration order.
+     */
+    private static SinglyLinkedList<String> collect(Iterator<String> iter) {
+        SinglyLinkedList<String> hashCodes = new SinglyLinkedList<>();
+        while (iter.hasNext()) {
+            hashCodes.add(iter.next());
+        }
+        return hashCodes;
+    }
+
+    /**
+     * Lazily walks the implicit tree depth first using an explicit stack of node numbers.
+     */
+    private class DepthFirstIterator implements Iterator<String> {
+        /**
+         * The order in which nodes are visited.
+         */
+        private final Order order;
+
+        /**
+         * The stack of pending node numbers; a pre-order walk needs up to two entries per level.
+         */
+        private final int[] stack = new int[2 * height + 2];
+
+        /**
+         * The number of entries on the stack.
+         */
+        private int top;
+
+        /**
+         * The next node whose left spine has to be pushed, or 0 (in-order and post-order only).
+         */
+        private int current;
+
+        /**
+         * The node returned last (post-order only).
+         */
+        private int lastVisited;
+
+        /**
+         * Starts a walk from the root.
+         *
+         * @param order The order in which nodes are visited.
+         */
+        DepthFirstIterator(Order order) {
+            this.order = order;
+            if (order == Order.PREORDER) {
+                stack[top++] = 1;
+            }
+            else {
+                current = 1;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return current != 0 || top > 0;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            switch (order) {
+                case PREORDER: {
+                    int node = stack[--top];
+                    if (node < leaves) {
+                        stack[top++] = 2 * node + 1;
+                        stack[top++] = 2 * node;
+                    }
+                    return hashCodeOf(node);
+                }
+                case INORDER: {
+                    pushLeftSpine();
+                    int node = stack[--top];
+                    current = node < leaves ? 2 * node + 1 : 0;
+                    return hashCodeOf(node);
+                }
+                default: {
+                    while (true) {
+                        pushLeftSpine();
+                        int node = stack[top - 1];
+                        if (node < leaves && 2 * node + 1 != lastVisited) {
+                            current = 2 * node + 1;
+                        }
+                        else {
+                            top--;
+                            lastVisited = node;
+                            return hashCodeOf(node);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Pushes the current node and its chain of left children.
+         */
+        private void pushLeftSpine() {
+            while (current != 0) {
+                stack[top++] = current;
+                current = current < leaves ? 2 * current : 0;
+            }
+        }
+    }
+}
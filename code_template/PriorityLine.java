@@ -1,4 +1,8 @@
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Implements a priority queue.
@@ -96,4 +100,40 @@ public class PriorityLine<T extends Comparable<T>> implements Iterable<T>
         return this.priorityQueue.iterator();
     }
 
+    /**
+     * Returns a sized spliterator over the elements in the order they would be dequeued.
+     * The elements are copied into an array when the spliterator is created, so it splits into balanced halves.
+     *
+     * @return A Spliterator over the elements.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        Object[] snapshot = new Object[size()];
+        int i = 0;
+        for (T element : this) {
+            snapshot[i++] = element;
+        }
+        return Spliterators.spliterator(snapshot, Spliterator.ORDERED);
+    }
+
+    /**
+     * Returns a sequential stream over the elements in the order they would be dequeued.
+     *
+     * @return A sequential Stream.
+     */
+    public Stream<T> stream()
+    {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Returns a parallel stream over the elements in the order they would be dequeued.
+     *
+     * @return A parallel Stream.
+     */
+    public Stream<T> parallelStream()
+    {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
 }
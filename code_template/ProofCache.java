@@ -0,0 +1,126 @@
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded least-recently-used cache of Merkle proofs, keyed by the leaf digest of the proven transaction.
+ * Proofs are stored once in the binary CompactProof format and handed out as read-only views,
+ * so they cannot be modified by one reader under another. All methods are safe to call from several threads.
+ */
+public class ProofCache
+{
+    /**
+     * The maximum number of proofs kept.
+     */
+    private final int capacity;
+
+    /**
+     * The cached proofs in access order, least recently used first.
+     */
+    private final LinkedHashMap<ByteBuffer, ByteBuffer> proofs;
+
+    /**
+     * The number of lookups that found a proof.
+     */
+    private long hits;
+
+    /**
+     * The number of lookups that found nothing.
+     */
+    private long misses;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param capacity The maximum number of proofs kept.
+     * @throws IllegalArgumentException if capacity is not positive.
+     */
+    public ProofCache(int capacity)
+    {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.proofs = new LinkedHashMap<ByteBuffer, ByteBuffer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, ByteBuffer> eldest) {
+                return size() > ProofCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Looks up the proof of a transaction and marks it as recently used.
+     *
+     * @param leafDigest The leaf digest of the transaction; it must not be modified afterwards.
+     * @return A read-only view of the proof positioned at its start, or null if the proof is not cached.
+     * @implNote This operation has an expected time complexity of O(1).
+     */
+    public synchronized ByteBuffer get(byte[] leafDigest)
+    {
+        ByteBuffer proof = proofs.get(ByteBuffer.wrap(leafDigest));
+        if (proof == null) {
+            misses++;
+            return null;
+        }
+
+        hits++;
+        return proof.duplicate();
+    }
+
+    /**
+     * Stores the proof of a transaction, evicting the least recently used proof if the cache is full.
+     *
+     * @param leafDigest The leaf digest of the transaction; it must not be modified afterwards.
+     * @param proof The proof, between the buffer's position and limit; it is stored as a read-only view.
+     * @return A read-only view of the stored proof positioned at its start.
+     * @implNote This operation has an expected time complexity of O(1).
+     */
+    public synchronized ByteBuffer put(byte[] leafDigest, ByteBuffer proof)
+    {
+        ByteBuffer stored = proof.slice().asReadOnlyBuffer();
+        proofs.put(ByteBuffer.wrap(leafDigest), stored);
+        return stored.duplicate();
+    }
+
+    /**
+     * @return the maximum number of proofs kept.
+     */
+    public int capacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * @return the number of cached proofs.
+     */
+    public synchronized int size()
+    {
+        return proofs.size();
+    }
+
+    /**
+     * @return the number of lookups that found a proof.
+     */
+    public synchronized long hits()
+    {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that found nothing.
+     */
+    public synchronized long misses()
+    {
+        return misses;
+    }
+
+    /**
+     * @return the fraction of lookups that found a proof, or 0 if there were no lookups.
+     */
+    public synchronized double hitRatio()
+    {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Proof that a contiguous run of transactions, the leaves [from, to) of a Merkle tree, is contained in a block.
+ * It holds the hash codes of the maximal subtrees that lie entirely outside the range, in left-to-right order.
+ * At most two such subtrees exist per level, so the proof has O(logN) hash codes however long the range is.
+ * It is produced by MerkleTree.extractRangeProof and checked by Utilities.verifyRange.
+ */
+public final class RangeProof
+{
+    /**
+     * The height of the tree the proof was extracted from.
+     */
+    private final int height;
+
+    /**
+     * The position of the first leaf of the range.
+     */
+    private final int from;
+
+    /**
+     * One past the position of the last leaf of the range.
+     */
+    private final int to;
+
+    /**
+     * The hash codes of the subtrees outside the range, left to right.
+     */
+    private final String[] hashes;
+
+    /**
+     * Creates a range proof.
+     *
+     * @param height The height of the tree.
+     * @param from The position of the first leaf of the range.
+     * @param to One past the position of the last leaf of the range.
+     * @param hashes The hash codes of the subtrees outside the range, left to right.
+     */
+    RangeProof(int height, int from, int to, String[] hashes)
+    {
+        this.height = height;
+        this.from = from;
+        this.to = to;
+        this.hashes = hashes;
+    }
+
+    /**
+     * @return the height of the tree the proof was extracted from.
+     */
+    public int height()
+    {
+        return height;
+    }
+
+    /**
+     * @return the position of the first transaction of the range.
+     */
+    public int from()
+    {
+        return from;
+    }
+
+    /**
+     * @return one past the position of the last transaction of the range.
+     */
+    public int to()
+    {
+        return to;
+    }
+
+    /**
+     * @return the number of hash codes in the proof.
+     */
+    public int size()
+    {
+        return hashes.length;
+    }
+
+    /**
+     * Returns one of the hash codes of the proof.
+     *
+     * @param i The index of the hash code, in left-to-right order.
+     * @return The hash code.
+     * @throws IndexOutOfBoundsException if the index is out of bounds.
+     */
+    public String hashAt(int i)
+    {
+        return hashes[i];
+    }
+}
@@ -1,3 +1,5 @@
+import java.util.Arrays;
+
 /**
     - This class represents a single transaction
     - Do NOT edit the provided methods
@@ -26,6 +28,16 @@ public class Transaction implements Comparable<Transaction>
      * The fee associated with the transaction.
      */
     private int fee;
+
+    /**
+     * The SHA-256 digest of this transaction as a Merkle leaf, computed on first use.
+     */
+    private volatile byte[] leafDigest;
+
+    /**
+     * The hexadecimal form of the leaf digest, computed on first use.
+     */
+    private volatile String leafHash;
     
 
     /**
@@ -54,6 +66,36 @@ public class Transaction implements Comparable<Transaction>
         return String.format("%s %s %d %d", sender, receiver, amount, fee);
     }
 
+    /**
+     * Gets the sender's name or identifier.
+     *
+     * @return The sender.
+     */
+    public String getSender()
+    {
+        return sender;
+    }
+
+    /**
+     * Gets the receiver's name or identifier.
+     *
+     * @return The receiver.
+     */
+    public String getReceiver()
+    {
+        return receiver;
+    }
+
+    /**
+     * Gets the amount of the transaction.
+     *
+     * @return The amount.
+     */
+    public int getAmount()
+    {
+        return amount;
+    }
+
     /**
      * Gets the fee associated with the transaction.
      *
@@ -64,6 +106,66 @@ public class Transaction implements Comparable<Transaction>
         return fee;
     }
     
+    /**
+     * Gets the hash code of this transaction as a Merkle leaf, i.e. cryptographicHashFunction(toString()).
+     * It is computed once and cached, since a transaction never changes.
+     *
+     * @return The leaf hash code.
+     */
+    public String getLeafHash()
+    {
+        String hash = leafHash;
+        if (hash == null) {
+            hash = Utilities.toHex(leafDigest());
+            leafHash = hash;
+        }
+        return hash;
+    }
+
+    /**
+     * Gets the raw SHA-256 digest of this transaction as a Merkle leaf.
+     * It is computed once and cached; callers must not modify the returned array.
+     *
+     * @return The 32-byte leaf digest.
+     */
+    byte[] leafDigest()
+    {
+        byte[] digest = leafDigest;
+        if (digest == null) {
+            digest = Utilities.leafDigest(this);
+            leafDigest = digest;
+        }
+        return digest;
+    }
+
+    /**
+     * Two transactions are equal when their leaf digests are equal, i.e. they hash to the same Merkle leaf.
+     * Note that this is stricter than compareTo, which only compares fees.
+     *
+     * @param other The object to compare to.
+     * @return True if other is a Transaction with the same leaf digest.
+     */
+    @Override
+    public boolean equals(Object other)
+    {
+        if (this == other) return true;
+        if (!(other instanceof Transaction)) return false;
+
+        return Arrays.equals(leafDigest(), ((Transaction) other).leafDigest());
+    }
+
+    /**
+     * Derives the hash code from the first bytes of the leaf digest, which are already uniformly distributed.
+     *
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode()
+    {
+        byte[] digest = leafDigest();
+        return (digest[0] & 0xff) << 24 | (digest[1] & 0xff) << 16 | (digest[2] & 0xff) << 8 | (digest[3] & 0xff);
+    }
+
     /**
      * Compares this Transaction with another Transaction based on their fees.
      *
@@ -0,0 +1,418 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Binary columnar file format for transactions, with a converter from the text format read by
+ * Utilities.loadTransactions and a loader that decodes the columns straight from a memory-mapped file.
+ * <pre>
+ *   magic       "TXC2"
+ *   dictionary  varint count, then per name: varint length and UTF-8 bytes
+ *   senders     one varint dictionary id per transaction
+ *   receivers   one varint dictionary id per transaction
+ *   amounts     one zigzag varint per transaction: the difference from the previous amount
+ *   fees        one zigzag varint per transaction
+ *   footer      int count, long offset of each of the five sections,
+ *               int CRC32 of everything before it (the count and offsets included), "TXC2"
+ * </pre>
+ * All fixed-width fields are little-endian. Duplicate transactions are dropped during conversion,
+ * as loadTransactions does, so loading a converted file never needs to hash.
+ */
+public final class TransactionFile
+{
+    /**
+     * The magic number that starts and ends every file ("TXC2").
+     */
+    private static final int MAGIC = 0x32435854;
+
+    /**
+     * The length in bytes of the footer.
+     */
+    private static final int FOOTER_LENGTH = 4 + 5 * 8 + 4 + 4;
+
+    /**
+     * The offset of the CRC32 in the footer; the count and section offsets before it are checksummed too.
+     */
+    private static final int FOOTER_CRC = 4 + 5 * 8;
+
+    /**
+     * Not instantiable.
+     */
+    private TransactionFile()
+    {
+    }
+
+    /**
+     * Converts a text file of "sender receiver amount fee" lines to the binary columnar format.
+     *
+     * @param textFile is the filename of the text file.
+     * @param binaryFile is the filename of the binary file to write.
+     * @return the number of transactions written, or -1 if a file could not be read or written.
+     */
+    public static int convert(String textFile, String binaryFile)
+    {
+        HashMap<String, Integer> ids = new HashMap<>();
+        Column dictionary = new Column();
+        Column senders = new Column();
+        Column receivers = new Column();
+        Column amounts = new Column();
+        Column fees = new Column();
+        DigestSet seen = new DigestSet();
+        int count = 0;
+        int previousAmount = 0;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(textFile, StandardCharsets.UTF_8), 1 << 16)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) continue;
+
+                String[] transactionInfo = line.split(" ");
+                Transaction transaction = new Transaction(transactionInfo[0], transactionInfo[1],
+                        Integer.parseInt(transactionInfo[2]), Integer.parseInt(transactionInfo[3]));
+                if (!seen.add(transaction.leafDigest())) continue;
+
+                senders.putVarint(idOf(transaction.getSender(), ids, dictionary));
+                receivers.putVarint(idOf(transaction.getReceiver(), ids, dictionary));
+                amounts.putVarint(zigzag(transaction.getAmount() - previousAmount));
+                fees.putVarint(zigzag(transaction.getFee()));
+                previousAmount = transaction.getAmount();
+                count++;
+            }
+        }
+        catch (IOException e) {
+            System.out.printf("Desired file %s could not be read: %s%n", textFile, e.getMessage());
+            return -1;
+        }
+
+        Column header = new Column();
+        header.putVarint(ids.size());
+
+        CRC32 crc = new CRC32();
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        footer.putInt(count);
+
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(binaryFile), 1 << 16)) {
+            long offset = 0;
+            offset = write(intBytes(MAGIC), out, crc, offset);
+
+            footer.putLong(offset);
+            offset = write(header, out, crc, offset);
+            offset = write(dictionary, out, crc, offset);
+            for (Column column : new Column[] {senders, receivers, amounts, fees}) {
+                footer.putLong(offset);
+                offset = write(column, out, crc, offset);
+            }
+
+            crc.update(footer.array(), 0, FOOTER_CRC);
+            footer.putInt((int) crc.getValue());
+            footer.putInt(MAGIC);
+            out.write(footer.array());
+        }
+        catch (IOException e) {
+            System.out.printf("Desired file %s could not be written: %s%n", binaryFile, e.getMessage());
+            return -1;
+        }
+
+        return count;
+    }
+
+    /**
+     * Reads a binary transaction file into a priority queue, as Utilities.loadTransactions reads the text file.
+     *
+     * @param binaryFile is the filename of the binary file.
+     * @return a PriorityLine containing the transactions, or null if the file is missing or corrupt.
+     */
+    public static PriorityLine<Transaction> load(String binaryFile)
+    {
+        return load(binaryFile, new PriorityLine<>());
+    }
+
+    /**
+     * Reads a binary transaction file into the given priority queue, e.g. a FeeBucketLine
+     * (see Utilities.loadTransactions(String, PriorityLine) for how the choice affects equal fees).
+     *
+     * @param binaryFile is the filename of the binary file.
+     * @param priorityLine is the queue to add the transactions to.
+     * @return priorityLine, or null if the file is missing or corrupt.
+     */
+    public static PriorityLine<Transaction> load(String binaryFile, PriorityLine<Transaction> priorityLine)
+    {
+        return forEach(binaryFile, priorityLine::enqueue) < 0 ? null : priorityLine;
+    }
+
+    /**
+     * Decodes every transaction of a binary transaction file, in file order, e.g. into a Block.
+     * The file is memory-mapped and its checksum, which also covers the count and section offsets,
+     * is verified before any transaction is passed on. Every column is bounded by its own section and
+     * every name id is checked, so a file that passes the checksum but is still malformed is reported
+     * as corrupt too, although some of its transactions may have been passed on by then.
+     * Names are decoded once from the dictionary and shared by all their transactions.
+     *
+     * @param binaryFile is the filename of the binary file.
+     * @param consumer receives the transactions.
+     * @return the number of transactions passed to the consumer, or -1 if the file is missing or corrupt.
+     */
+    public static int forEach(String binaryFile, Consumer<Transaction> consumer)
+    {
+        MappedByteBuffer file;
+        try (FileChannel channel = FileChannel.open(Paths.get(binaryFile), StandardOpenOption.READ)) {
+            if (channel.size() < 4 + FOOTER_LENGTH || channel.size() > Integer.MAX_VALUE) {
+                System.out.printf("Desired file %s is not a transaction file!%n", binaryFile);
+                return -1;
+            }
+            file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        catch (IOException e) {
+            System.out.printf("Desired file %s could not be read: %s%n", binaryFile, e.getMessage());
+            return -1;
+        }
+        file.order(ByteOrder.LITTLE_ENDIAN);
+
+        int footerStart = file.limit() - FOOTER_LENGTH;
+        int count = file.getInt(footerStart);
+
+        // Section s spans from its offset to the next section's offset, the last one to the footer
+        int[] sections = new int[6];
+        sections[5] = footerStart;
+        boolean ordered = true;
+        for (int s = 0; s < 5; s++) {
+            long offset = file.getLong(footerStart + 4 + 8 * s);
+            ordered &= offset >= (s == 0 ? 4 : sections[s - 1]) && offset <= footerStart;
+            sections[s] = ordered ? (int) offset : 0;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(file.duplicate().limit(footerStart + FOOTER_CRC));
+        if (file.getInt(0) != MAGIC || file.getInt(file.limit() - 4) != MAGIC || !ordered
+                || file.getInt(footerStart + FOOTER_CRC) != (int) crc.getValue()) {
+            System.out.printf("Desired file %s is corrupt!%n", binaryFile);
+            return -1;
+        }
+
+        try {
+            ByteBuffer dictionary = section(file, sections, 0);
+            ByteBuffer senders = section(file, sections, 1);
+            ByteBuffer receivers = section(file, sections, 2);
+            ByteBuffer amounts = section(file, sections, 3);
+            ByteBuffer fees = section(file, sections, 4);
+
+            // Every varint takes at least one byte
+            if (count < 0 || count > senders.remaining() || count > receivers.remaining()
+                    || count > amounts.remaining() || count > fees.remaining()) {
+                throw new IndexOutOfBoundsException("count " + count);
+            }
+
+            String[] names = new String[checkLength(readVarint(dictionary), dictionary)];
+            for (int i = 0; i < names.length; i++) {
+                byte[] name = new byte[checkLength(readVarint(dictionary), dictionary)];
+                dictionary.get(name);
+                names[i] = new String(name, StandardCharsets.UTF_8);
+            }
+
+            int amount = 0;
+            for (int i = 0; i < count; i++) {
+                amount += unzigzag(readVarint(amounts));
+                String sender = names[Objects.checkIndex(readVarint(senders), names.length)];
+                String receiver = names[Objects.checkIndex(readVarint(receivers), names.length)];
+                consumer.accept(new Transaction(sender, receiver, amount, unzigzag(readVarint(fees))));
+            }
+        }
+        catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            System.out.printf("Desired file %s is corrupt!%n", binaryFile);
+            return -1;
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns a view of one section of the file.
+     *
+     * @param file is the mapped file.
+     * @param sections holds the offset of every section, then the offset of the footer.
+     * @param s is the section number.
+     * @return a buffer positioned at the start of the section and limited to its end.
+     */
+    private static ByteBuffer section(ByteBuffer file, int[] sections, int s)
+    {
+        return file.duplicate().limit(sections[s + 1]).position(sections[s]);
+    }
+
+    /**
+     * Checks a decoded length against the bytes left in its section.
+     *
+     * @param length is the decoded length, a number of names or of bytes.
+     * @param in is the section being decoded.
+     * @return length.
+     * @throws BufferUnderflowException if the section cannot hold that many entries of at least one byte.
+     */
+    private static int checkLength(int length, ByteBuffer in)
+    {
+        if (length < 0 || length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return length;
+    }
+
+    /**
+     * Returns the dictionary id of a name, adding the name to the dictionary the first time it is seen.
+     *
+     * @param name is the sender or receiver name.
+     * @param ids maps the names seen so far to their ids.
+     * @param dictionary is the encoded dictionary.
+     * @return the id of the name.
+     */
+    private static int idOf(String name, HashMap<String, Integer> ids, Column dictionary)
+    {
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = ids.size();
+            ids.put(name, id);
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            dictionary.putVarint(bytes.length);
+            dictionary.put(bytes, bytes.length);
+        }
+        return id;
+    }
+
+    /**
+     * Writes a column to the output and to the checksum.
+     *
+     * @param column is the column to write.
+     * @param out is the output.
+     * @param crc is the running checksum.
+     * @param offset is the file offset of the column.
+     * @return the file offset after the column.
+     * @throws IOException if writing fails.
+     */
+    private static long write(Column column, OutputStream out, CRC32 crc, long offset) throws IOException
+    {
+        out.write(column.bytes, 0, column.size);
+        crc.update(column.bytes, 0, column.size);
+        return offset + column.size;
+    }
+
+    /**
+     * Wraps the little-endian bytes of an int in a column.
+     *
+     * @param value is the int.
+     * @return a column holding its four bytes.
+     */
+    private static Column intBytes(int value)
+    {
+        Column column = new Column();
+        column.put(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array(), 4);
+        return column;
+    }
+
+    /**
+     * Maps a signed int to an unsigned one so that small magnitudes get short varints.
+     *
+     * @param n is the signed value.
+     * @return the zigzag-encoded value.
+     */
+    private static int zigzag(int n)
+    {
+        return (n << 1) ^ (n >> 31);
+    }
+
+    /**
+     * Reverses zigzag.
+     *
+     * @param n is the zigzag-encoded value.
+     * @return the signed value.
+     */
+    private static int unzigzag(int n)
+    {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    /**
+     * Reads an unsigned LEB128 varint and advances the buffer.
+     *
+     * @param in is the buffer.
+     * @return the decoded value.
+     */
+    private static int readVarint(ByteBuffer in)
+    {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    /**
+     * A growable byte array a column is encoded into before it is written.
+     */
+    private static final class Column
+    {
+        /**
+         * The encoded bytes.
+         */
+        byte[] bytes = new byte[1024];
+
+        /**
+         * The number of bytes used.
+         */
+        int size;
+
+        /**
+         * Appends an unsigned LEB128 varint.
+         *
+         * @param value is the value, treated as unsigned.
+         */
+        void putVarint(int value)
+        {
+            ensure(5);
+            while ((value & ~0x7f) != 0) {
+                bytes[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        /**
+         * Appends raw bytes.
+         *
+         * @param src is the source array.
+         * @param length is the number of bytes to append.
+         */
+        void put(byte[] src, int length)
+        {
+            ensure(length);
+            System.arraycopy(src, 0, bytes, size, length);
+            size += length;
+        }
+
+        /**
+         * Grows the array so that it has room for more bytes.
+         *
+         * @param extra is the number of bytes needed.
+         */
+        private void ensure(int extra)
+        {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, size + extra));
+            }
+        }
+    }
+}
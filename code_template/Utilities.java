@@ -1,7 +1,11 @@
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.Iterator;
 import java.util.Scanner;
+import java.nio.ByteBuffer;
+import java.security.DigestException;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.nio.charset.StandardCharsets;
 
 /**
@@ -10,9 +14,33 @@ import java.nio.charset.StandardCharsets;
  */
 public final class Utilities
 {
+    /**
+     * The lowercase hexadecimal digits.
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Per-thread scratch space used to hash raw digests without allocating.
+     */
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[96]);
+
+    /**
+     * One SHA-256 MessageDigest per thread, so hashing does not look up the algorithm on every call.
+     */
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
     /**
      * Reads the transactions from a text file and adds them to a priority queue.
      *
+     * A transaction whose leaf digest was already read is a duplicate and is skipped.
+     *
      * @param pgmFile is the filename of the text file.
      * @return a PriorityLine containing the transactions.
      *
@@ -20,7 +48,23 @@ public final class Utilities
      */
     public static PriorityLine<Transaction> loadTransactions(String pgmFile)
     {
-        PriorityLine<Transaction> priorityLine = new PriorityLine<>();
+        return loadTransactions(pgmFile, new PriorityLine<>());
+    }
+
+    /**
+     * Reads the transactions from a text file and adds them to the given priority queue.
+     *
+     * A FeeBucketLine loads in O(N), but it dequeues equal fees in file order, whereas a PriorityLine
+     * dequeues them in reverse file order; the blocks built from the two differ when fees repeat.
+     * A transaction whose leaf digest was already read is a duplicate and is skipped.
+     *
+     * @param pgmFile is the filename of the text file.
+     * @param priorityLine is the queue to add the transactions to.
+     * @return priorityLine, or null if the file was not found.
+     */
+    public static PriorityLine<Transaction> loadTransactions(String pgmFile, PriorityLine<Transaction> priorityLine)
+    {
+        DigestSet seen = new DigestSet();
         
         try{
             File file = new File(pgmFile);
@@ -39,7 +83,9 @@ public final class Utilities
     
                 Transaction newTransaction = new Transaction(sender, receiver, amount, fee);
     
-                priorityLine.enqueue(newTransaction);
+                if (seen.add(newTransaction.leafDigest())) {
+                    priorityLine.enqueue(newTransaction);
+                }
             }
     
             scanner.close();
@@ -64,17 +110,268 @@ public final class Utilities
     */
     public static boolean verifyTransaction(Transaction t, SinglyLinkedList<String> proof, String blockRootHash)
     {
-        String transactionHash = cryptographicHashFunction(t.toString());
+        return rootHashFromProof(t, proof).equals(blockRootHash);
+    }
+
+    /**
+        Verifies if a transaction is contained in a chain using only the chain's commitment.
+        The Merkle proof leads from the transaction to its block's root hash, and the block proof
+        leads from that root hash to the chain commitment.
+
+        @param t is the transaction that we want to verify its presence in the chain
+        @param proof is the list of hashes extracted with the method extractProof of the block's Merkle tree
+        @param blockProof is the proof returned by Blockchain.proveBlock for the block
+        @param chainCommitment is the commitment returned by Blockchain.getChainCommitment
+        @return true if the transaction is verified, false otherwise
+
+        TIME COMPLEXITY REQUIREMENT: O(logN + logB)
+    */
+    public static boolean verifyTransaction(Transaction t, SinglyLinkedList<String> proof,
+                                            MountainRange.Proof blockProof, String chainCommitment)
+    {
+        return MountainRange.verify(rootHashFromProof(t, proof), blockProof, chainCommitment);
+    }
+
+    /**
+        Verifies if a contiguous run of transactions is contained in a certain block using a range proof.
+        Only the subtrees covering the range are rebuilt from the transactions; every other subtree
+        is taken from the proof.
+
+        @param transactions are the transactions of the range, in block order
+        @param proof is the proof extracted with the method extractRangeProof
+        @param blockRootHash is the root hash code stored in the respective block
+        @return true if the transactions are verified, false otherwise, including when there are too few or too many of them
+
+        TIME COMPLEXITY REQUIREMENT: O(R + logN) for a range of R transactions
+    */
+    public static boolean verifyRange(Iterable<Transaction> transactions, RangeProof proof, String blockRootHash)
+    {
+        if (proof.height() < 0 || proof.height() > 30) return false;
+
+        int leaves = 1 << proof.height();
+        if (proof.from() < 0 || proof.from() >= proof.to() || proof.to() > leaves) return false;
+
+        Iterator<Transaction> iter = transactions.iterator();
+        int[] nextHash = {0};
+        String rootHash = rebuildRange(iter, proof, nextHash, 0, leaves);
+
+        return rootHash != null && !iter.hasNext() && nextHash[0] == proof.size() && rootHash.equals(blockRootHash);
+    }
+
+    /**
+     * Recursively rebuilds the hash code of a subtree, taking the subtrees outside the range from the proof.
+     *
+     * @param iter is an iterator over the transactions of the range.
+     * @param proof is the range proof.
+     * @param nextHash holds the index of the next unused hash code of the proof.
+     * @param first is the position of the first leaf of the subtree.
+     * @param leaves is the number of leaves of the subtree.
+     * @return the hash code of the subtree, or null if the transactions or proof hash codes run out.
+     */
+    private static String rebuildRange(Iterator<Transaction> iter, RangeProof proof, int[] nextHash, int first, int leaves)
+    {
+        if (first + leaves <= proof.from() || first >= proof.to())
+        {
+            return nextHash[0] < proof.size() ? proof.hashAt(nextHash[0]++) : null;
+        }
+
+        if (leaves == 1)
+        {
+            return iter.hasNext() ? iter.next().getLeafHash() : null;
+        }
+
+        int half = leaves / 2;
+        String left = rebuildRange(iter, proof, nextHash, first, half);
+        if (left == null) return null;
+        String right = rebuildRange(iter, proof, nextHash, first + half, half);
+        if (right == null) return null;
+
+        return cryptographicHashFunction(left, right);
+    }
+
+    /**
+     * Reconstructs the Merkle root hash implied by a transaction and its proof.
+     *
+     * @param t is the transaction.
+     * @param proof is the list of hashes extracted with the method extractProof.
+     * @return the root hash code the proof leads to.
+     */
+    private static String rootHashFromProof(Transaction t, SinglyLinkedList<String> proof)
+    {
+        String transactionHash = t.getLeafHash();
     
         // Reconstruct the Merkle tree using the proof
         for(String proofHash : proof){
             String totalHash = cryptographicHashFunction(transactionHash, proofHash);
             transactionHash = totalHash;
         }
-                
-        return transactionHash.equals(blockRootHash);
+
+        return transactionHash;
+    }
+
+    /**
+        Verifies if a transaction is contained in a certain block using a binary Merkle proof.
+        The proof is read in place from the buffer (see CompactProof), and hashing works on raw bytes
+        without building any intermediate Strings. The buffer's position is not changed.
+
+        @param t is the transaction that we want to verify its presence in the block
+        @param proof is the buffer holding a proof written by MerkleTree.extractProof(Transaction, ByteBuffer)
+        @param blockRootHash is the root hash code stored in the respective block
+        @return true if the transaction is verified, false otherwise, including for a truncated proof
+
+        TIME COMPLEXITY REQUIREMENT: O(logN)
+    */
+    public static boolean verifyTransaction(Transaction t, ByteBuffer proof, String blockRootHash)
+    {
+        if (proof.remaining() < CompactProof.HEADER_LENGTH) return false;
+
+        int depth = CompactProof.depth(proof);
+        if (proof.remaining() < CompactProof.encodedLength(depth)) return false;
+
+        byte[] current = t.leafDigest().clone();
+        byte[] sibling = new byte[CompactProof.SIBLING_LENGTH];
+
+        for (int level = 0; level < depth; level++)
+        {
+            proof.get(CompactProof.siblingOffset(proof, level), sibling);
+
+            if (CompactProof.isLeftSibling(proof, level))
+            {
+                combineDigests(sibling, current, current);
+            }
+            else
+            {
+                combineDigests(current, sibling, current);
+            }
+        }
+
+        return hexEquals(current, blockRootHash);
+    }
+
+    /**
+     * Calculates the raw SHA-256 digest of a transaction as a Merkle leaf.
+     * Its hexadecimal form is the leaf hash code cryptographicHashFunction(t.toString()).
+     * This always hashes; use Transaction.getLeafHash() to reuse the cached result.
+     *
+     * @param t is the transaction to hash.
+     * @return the 32-byte digest of the transaction.
+     */
+    public static byte[] leafDigest(Transaction t)
+    {
+        return digest(t.toString());
+    }
+
+    /**
+     * Calculates the raw SHA-256 digest of a string, whose hexadecimal form is cryptographicHashFunction(input).
+     *
+     * @param input is the input string for which the digest will be calculated.
+     * @return the 32-byte digest.
+     */
+    public static byte[] digest(String input)
+    {
+        return sha256().digest(input.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Converts a digest to the lowercase hexadecimal form produced by cryptographicHashFunction.
+     *
+     * @param digest is the digest to convert.
+     * @return a hexadecimal string of twice the digest length.
+     */
+    public static String toHex(byte[] digest)
+    {
+        char[] hex = new char[2 * digest.length];
+        for (int i = 0; i < digest.length; i++)
+        {
+            hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Calculates cryptographicHashFunction(left, right) on raw digests instead of hexadecimal hash codes.
+     * No Strings are built; the hexadecimal forms are written to per-thread scratch space.
+     *
+     * @param left is the digest of the left child.
+     * @param right is the digest of the right child.
+     * @param out receives the 32-byte combined digest; it may be one of the inputs.
+     */
+    public static void combineDigests(byte[] left, byte[] right, byte[] out)
+    {
+        byte[] scratch = SCRATCH.get();
+
+        // scratch holds the hexadecimal form in [0, 64) and the left hash in [64, 96)
+        hashHex(left, scratch, 64);
+        hashHex(right, scratch, 0);
+        System.arraycopy(scratch, 0, out, 0, 32);
+        for (int i = 0; i < 32; i++)
+        {
+            out[i] ^= scratch[64 + i];
+        }
     }
 
+    /**
+     * Writes the SHA-256 digest of a digest's hexadecimal form into the scratch space.
+     * The hexadecimal form occupies the first 64 bytes of the scratch space.
+     *
+     * @param digest is the 32-byte digest to hash.
+     * @param scratch is the per-thread scratch space.
+     * @param offset is where the resulting digest is written.
+     */
+    private static void hashHex(byte[] digest, byte[] scratch, int offset)
+    {
+        for (int i = 0; i < 32; i++)
+        {
+            scratch[2 * i] = (byte) HEX_DIGITS[(digest[i] >> 4) & 0xf];
+            scratch[2 * i + 1] = (byte) HEX_DIGITS[digest[i] & 0xf];
+        }
+
+        MessageDigest sha = sha256();
+        sha.update(scratch, 0, 64);
+        try
+        {
+            sha.digest(scratch, offset, 32);
+        }
+        catch (DigestException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Compares a digest with a hexadecimal hash code without converting either of them.
+     *
+     * @param digest is the raw digest.
+     * @param hashCode is the hexadecimal hash code, as produced by cryptographicHashFunction.
+     * @return true if both represent the same bytes.
+     */
+    private static boolean hexEquals(byte[] digest, String hashCode)
+    {
+        if (hashCode == null || hashCode.length() != 2 * digest.length) return false;
+
+        for (int i = 0; i < digest.length; i++)
+        {
+            if (hashCode.charAt(2 * i) != HEX_DIGITS[(digest[i] >> 4) & 0xf]
+                    || hashCode.charAt(2 * i + 1) != HEX_DIGITS[digest[i] & 0xf])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a SHA-256 MessageDigest reserved for the calling thread.
+     *
+     * @return a reset SHA-256 MessageDigest.
+     */
+    private static MessageDigest sha256()
+    {
+        MessageDigest digest = SHA256.get();
+        digest.reset();
+        return digest;
+    }
 
     //**************************** DO NOT EDIT BELOW THIS LINE **************************************
   
@@ -0,0 +1,188 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+    Writes synthetic transaction files in the "sender receiver amount fee" format read by Utilities.loadTransactions,
+    for capacity planning with LoadDriver. The same arguments always produce the same file.
+
+    Usage: java WorkloadGenerator <output file> <count> [uniform|zipf|bursty] [senders] [seed]
+*/
+public final class WorkloadGenerator
+{
+    /**
+     * How transaction fees are drawn.
+     */
+    public enum FeeDistribution
+    {
+        /**
+         * Every fee in [0, MAX_FEE) is equally likely.
+         */
+        UNIFORM,
+
+        /**
+         * Fee f has probability proportional to 1 / (f + 1)^ZIPF_EXPONENT: most transactions pay almost nothing.
+         */
+        ZIPF,
+
+        /**
+         * Long calm runs of low fees alternate with shorter bursts of high fees, as when a mempool gets congested.
+         */
+        BURSTY
+    }
+
+    /**
+     * Fees are drawn from [0, MAX_FEE).
+     */
+    public static final int MAX_FEE = 100;
+
+    /**
+     * The exponent of the Zipf fee distribution.
+     */
+    private static final double ZIPF_EXPONENT = 1.1;
+
+    /**
+     * The mean length of a calm run of the bursty distribution.
+     */
+    private static final int CALM_RUN = 4000;
+
+    /**
+     * The mean length of a burst of the bursty distribution.
+     */
+    private static final int BURST_RUN = 1000;
+
+    /**
+     * Amounts are drawn from [1, MAX_AMOUNT].
+     */
+    private static final int MAX_AMOUNT = 1_000_000;
+
+    /**
+     * Not instantiable.
+     */
+    private WorkloadGenerator()
+    {
+    }
+
+    public static void main(String[] args)
+    {
+        if (args.length < 2)
+        {
+            System.err.println("Usage: java WorkloadGenerator <output file> <count> [uniform|zipf|bursty] [senders] [seed]");
+            return;
+        }
+
+        int count = Integer.parseInt(args[1]);
+        FeeDistribution fees = args.length > 2 ? FeeDistribution.valueOf(args[2].toUpperCase()) : FeeDistribution.UNIFORM;
+        int senders = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 310;
+
+        if (generate(args[0], count, fees, senders, seed) < 0)
+        {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Writes a transaction file.
+     * Senders and receivers are drawn uniformly from the same set of names.
+     *
+     * @param file is the filename of the text file to write.
+     * @param count is the number of transactions.
+     * @param fees is the fee distribution.
+     * @param senders is the number of distinct sender (and receiver) names.
+     * @param seed seeds the random number generator.
+     * @return the number of transactions written, or -1 if the file could not be written.
+     * @throws IllegalArgumentException if count is negative or senders is not positive.
+     */
+    public static int generate(String file, int count, FeeDistribution fees, int senders, long seed)
+    {
+        if (count < 0 || senders <= 0)
+        {
+            throw new IllegalArgumentException("count must not be negative and senders must be positive");
+        }
+
+        SplittableRandom random = new SplittableRandom(seed);
+        double[] zipf = fees == FeeDistribution.ZIPF ? zipfCumulative() : null;
+        boolean burst = false;
+        int runLeft = 0;
+
+        try (Writer out = new BufferedWriter(new FileWriter(file, StandardCharsets.UTF_8), 1 << 16))
+        {
+            StringBuilder line = new StringBuilder(64);
+            for (int i = 0; i < count; i++)
+            {
+                int fee;
+                switch (fees)
+                {
+                    case ZIPF:
+                        fee = sample(zipf, random.nextDouble());
+                        break;
+                    case BURSTY:
+                        if (--runLeft <= 0)
+                        {
+                            burst = !burst;
+                            runLeft = 1 + random.nextInt(2 * (burst ? BURST_RUN : CALM_RUN));
+                        }
+                        fee = burst ? random.nextInt(MAX_FEE / 2, MAX_FEE) : random.nextInt(MAX_FEE / 10);
+                        break;
+                    default:
+                        fee = random.nextInt(MAX_FEE);
+                }
+
+                line.setLength(0);
+                line.append("sender").append(random.nextInt(senders))
+                    .append(" receiver").append(random.nextInt(senders))
+                    .append(' ').append(1 + random.nextInt(MAX_AMOUNT))
+                    .append(' ').append(fee)
+                    .append('\n');
+                out.append(line);
+            }
+        }
+        catch (IOException e)
+        {
+            System.out.printf("Desired file %s could not be written: %s%n", file, e.getMessage());
+            return -1;
+        }
+
+        return count;
+    }
+
+    /**
+     * Tabulates the cumulative Zipf distribution of fees.
+     *
+     * @return the probability of a fee not greater than f at index f; the last entry is 1.
+     */
+    private static double[] zipfCumulative()
+    {
+        double[] cumulative = new double[MAX_FEE];
+        double sum = 0;
+        for (int f = 0; f < MAX_FEE; f++)
+        {
+            sum += 1 / Math.pow(f + 1, ZIPF_EXPONENT);
+            cumulative[f] = sum;
+        }
+        for (int f = 0; f < MAX_FEE; f++)
+        {
+            cumulative[f] /= sum;
+        }
+        cumulative[MAX_FEE - 1] = 1;
+        return cumulative;
+    }
+
+    /**
+     * Draws a fee from a cumulative distribution.
+     *
+     * @param cumulative is the cumulative distribution.
+     * @param u is uniform in [0, 1).
+     * @return the smallest fee whose cumulative probability exceeds u.
+     */
+    private static int sample(double[] cumulative, double u)
+    {
+        int index = Arrays.binarySearch(cumulative, u);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+}